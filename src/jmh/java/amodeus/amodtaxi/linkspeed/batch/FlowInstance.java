@@ -0,0 +1,124 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import amodeus.amodeus.util.matsim.NetworkLoader;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+import amodeus.amodtaxi.linkspeed.LinkIndex;
+import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.alg.Array;
+
+/** Synthetic instance of the delay fit: trips are random walks without u-turns on a
+ * {@link Network}, a fraction of the links is congested with a random delay, and the
+ * recorded trip durations are the free flow durations plus the delays of the passed
+ * links plus Gaussian noise. */
+/* package */ class FlowInstance {
+    private static final double GRID_SPACING = 200;
+    private static final double FREE_SPEED = 13.9;
+    private static final double CONGESTED_FRACTION = 0.3;
+    private static final int MIN_LINKS = 5;
+    private static final int MAX_LINKS = 40;
+
+    /** @return square grid network with @param size x @param size nodes and links in both directions */
+    public static Network grid(int size) {
+        Network network = NetworkUtils.createNetwork();
+        Node[][] nodes = new Node[size][size];
+        for (int x = 0; x < size; ++x)
+            for (int y = 0; y < size; ++y)
+                nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.createNodeId(x + "_" + y), //
+                        new Coord(x * GRID_SPACING, y * GRID_SPACING));
+        int id = 0;
+        for (int x = 0; x < size; ++x)
+            for (int y = 0; y < size; ++y) {
+                if (x + 1 < size) {
+                    NetworkUtils.createAndAddLink(network, Id.createLinkId(id++), nodes[x][y], nodes[x + 1][y], GRID_SPACING, FREE_SPEED, 1000, 1);
+                    NetworkUtils.createAndAddLink(network, Id.createLinkId(id++), nodes[x + 1][y], nodes[x][y], GRID_SPACING, FREE_SPEED, 1000, 1);
+                }
+                if (y + 1 < size) {
+                    NetworkUtils.createAndAddLink(network, Id.createLinkId(id++), nodes[x][y], nodes[x][y + 1], GRID_SPACING, FREE_SPEED, 1000, 1);
+                    NetworkUtils.createAndAddLink(network, Id.createLinkId(id++), nodes[x][y + 1], nodes[x][y], GRID_SPACING, FREE_SPEED, 1000, 1);
+                }
+            }
+        return network;
+    }
+
+    /** @return grid of @param gridSize for "grid", otherwise the network read from the file @param network */
+    public static Network network(String network, int gridSize) {
+        return network.equals("grid") //
+                ? grid(gridSize) //
+                : NetworkLoader.fromNetworkFile(new File(network));
+    }
+
+    // ---
+    public final SparseFlowMatrix flowMatrix;
+    /** free flow and recorded durations, one row per trip */
+    public final Tensor freeTimes;
+    public final Tensor trafficTimes;
+    public final Tensor deviation;
+
+    /** @param numTrips random trips on @param network with deviations disturbed by noise with standard
+     * deviation @param noise in [s], generated with @param seed */
+    public FlowInstance(Network network, int numTrips, double noise, long seed) {
+        Random random = new Random(seed);
+        LinkIndex linkIndex = new LinkIndex(network);
+        double[] delays = new double[linkIndex.size()];
+        for (int j = 0; j < delays.length; ++j)
+            if (random.nextDouble() < CONGESTED_FRACTION) {
+                Link link = linkIndex.link(j);
+                delays[j] = -Math.log(1 - random.nextDouble()) * link.getLength() / link.getFreespeed();
+            }
+
+        List<int[]> rows = new ArrayList<>(numTrips);
+        freeTimes = Array.zeros(numTrips, 1);
+        trafficTimes = Array.zeros(numTrips, 1);
+        deviation = Array.zeros(numTrips, 1);
+        while (rows.size() < numTrips) {
+            int[] path = randomWalk(linkIndex, random);
+            if (path.length < MIN_LINKS)
+                continue;
+            double freeTime = 0;
+            double delay = 0;
+            for (int index : path) {
+                Link link = linkIndex.link(index);
+                freeTime += link.getLength() / link.getFreespeed();
+                delay += delays[index];
+            }
+            double recorded = freeTime + Math.max(0, delay + noise * random.nextGaussian());
+            int row = rows.size();
+            rows.add(path);
+            freeTimes.set(RealScalar.of(freeTime), row, 0);
+            trafficTimes.set(RealScalar.of(recorded), row, 0);
+            deviation.set(RealScalar.of(recorded - freeTime), row, 0);
+        }
+        flowMatrix = SparseFlowMatrix.ofRows(linkIndex.size(), rows);
+    }
+
+    /** @return link indices of a random walk without u-turns and without repeated links */
+    private static int[] randomWalk(LinkIndex linkIndex, Random random) {
+        int length = MIN_LINKS + random.nextInt(MAX_LINKS - MIN_LINKS + 1);
+        List<Link> walk = new ArrayList<>();
+        walk.add(linkIndex.link(random.nextInt(linkIndex.size())));
+        while (walk.size() < length) {
+            Link last = walk.get(walk.size() - 1);
+            List<Link> candidates = new ArrayList<>();
+            for (Link next : last.getToNode().getOutLinks().values())
+                if (!next.getToNode().equals(last.getFromNode()) && !walk.contains(next))
+                    candidates.add(next);
+            if (candidates.isEmpty())
+                break;
+            walk.add(candidates.get(random.nextInt(candidates.size())));
+        }
+        return walk.stream().mapToInt(linkIndex::indexOf).toArray();
+    }
+}
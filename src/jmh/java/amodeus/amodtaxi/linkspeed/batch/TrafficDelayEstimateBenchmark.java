@@ -0,0 +1,107 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.Tensor;
+
+/** Compares the {@link TrafficDelayEstimate}s on synthetic {@link FlowInstance}s, once for the
+ * delay fit alone and once end to end with {@link FlowTrafficEstimation}. Run with
+ *
+ * mvn -P jmh compile exec:exec
+ *
+ * which reports the time per operation and, with the {@link GCProfiler}, the allocation rate.
+ * The residual {@link FlowTrafficEstimation#getError()} of every configuration is printed at the
+ * end of its trial. Parameters are overridden with, e.g.,
+ * -Djmh.args="network=path/to/network.xml.gz numTrips=1000,50000 solver=ADMM" */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class TrafficDelayEstimateBenchmark {
+    /** "grid" or path of a MATSim network file */
+    @Param({ "grid" })
+    public String network;
+    /** number of nodes along the side of the grid */
+    @Param({ "30" })
+    public int gridSize;
+    @Param({ "1000", "10000" })
+    public int numTrips;
+    /** standard deviation of the noise on the trip durations in [s] */
+    @Param({ "10" })
+    public double noise;
+    @Param({ "GLPK", "ADMM" })
+    public String solver;
+
+    private FlowInstance instance;
+    private TrafficDelayEstimate delayCalculator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        instance = new FlowInstance(FlowInstance.network(network, gridSize), numTrips, noise, 1);
+        delayCalculator = solver(solver);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FlowTrafficEstimation estimation = //
+                FlowTrafficEstimation.of(instance.flowMatrix, instance.freeTimes, instance.trafficTimes, delayCalculator);
+        System.out.println("Residual error " + solver + " with " + numTrips + " trips: " + estimation.getError());
+    }
+
+    @Benchmark
+    public Tensor delayEstimate() {
+        return delayCalculator.compute(instance.flowMatrix, instance.deviation);
+    }
+
+    @Benchmark
+    public Scalar flowTrafficEstimation() {
+        return FlowTrafficEstimation.of(instance.flowMatrix, instance.freeTimes, instance.trafficTimes, delayCalculator).getError();
+    }
+
+    private static TrafficDelayEstimate solver(String name) {
+        switch (name) {
+        case "GLPK":
+            return GLPKLinOptDelayCalculator.INSTANCE;
+        case "ADMM":
+            return ADMMDelayCalculator.INSTANCE;
+        default:
+            throw new IllegalArgumentException("unknown solver: " + name);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder optionsBuilder = new OptionsBuilder();
+        optionsBuilder.include(TrafficDelayEstimateBenchmark.class.getSimpleName());
+        optionsBuilder.addProfiler(GCProfiler.class);
+        /** arguments of the form name=value1,value2 */
+        for (String arg : args) {
+            String[] split = arg.split("=", 2);
+            if (split.length != 2)
+                throw new IllegalArgumentException("expected name=values: " + arg);
+            optionsBuilder.param(split[0], split[1].split(","));
+        }
+        new Runner(optionsBuilder.build()).run();
+    }
+}
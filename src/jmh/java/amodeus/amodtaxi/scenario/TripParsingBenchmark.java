@@ -0,0 +1,127 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.scenario;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import amodeus.amodtaxi.scenario.chicago.OnlineTripsReaderChicago;
+import amodeus.amodtaxi.scenario.chicago.ScenarioConstants;
+
+/** Compares parsing a synthetic Chicago trip file with the getters by column name against the
+ * parser compiled once per file by {@link OnlineTripsReaderChicago#compile(CsvSchema)}. Run with
+ *
+ * mvn -P jmh compile exec:exec -Djmh.main=amodeus.amodtaxi.scenario.TripParsingBenchmark
+ *
+ * Parameters are overridden with, e.g., -Djmh.args="numRows=100000 numThreads=1,8" */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+public class TripParsingBenchmark {
+    private static final String HEADER = "trip_id,taxi_id,trip_start_timestamp,trip_seconds,trip_miles," + //
+            "pickup_centroid_latitude,pickup_centroid_longitude,dropoff_centroid_latitude,dropoff_centroid_longitude";
+
+    /** about 120 bytes per row, i.e., the file spans multiple ranges of the parallel reader */
+    @Param({ "1000000" })
+    public int numRows;
+    @Param({ "byName", "compiled" })
+    public String parser;
+    /** 1 for the sequential reader */
+    @Param({ "1", "4" })
+    public int numThreads;
+
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("tripParsing", ".csv");
+        Random random = new Random(1);
+        LocalDateTime start = LocalDateTime.of(2018, 1, 1, 0, 0);
+        try (BufferedWriter bufferedWriter = new BufferedWriter(new FileWriter(file))) {
+            bufferedWriter.write(HEADER + "\n");
+            for (int row = 0; row < numRows; ++row) {
+                int seconds = 60 + random.nextInt(3600);
+                bufferedWriter.write(String.join(",", //
+                        "", //
+                        "taxi" + random.nextInt(5000), //
+                        start.plusSeconds(random.nextInt(86400 * 30)).format(ScenarioConstants.onlineFormatter), //
+                        Integer.toString(seconds), //
+                        Double.toString(seconds / 180.0), //
+                        Double.toString(41.7 + 0.3 * random.nextDouble()), //
+                        Double.toString(-87.8 + 0.3 * random.nextDouble()), //
+                        Double.toString(41.7 + 0.3 * random.nextDouble()), //
+                        Double.toString(-87.8 + 0.3 * random.nextDouble())) + "\n");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public List<TaxiTrip> parse() throws IOException {
+        TaxiTripsReader reader = reader(parser);
+        return numThreads == 1 //
+                ? reader.getTrips(file)
+                : reader.getTrips(file, numThreads);
+    }
+
+    private static TaxiTripsReader reader(String name) {
+        switch (name) {
+        case "byName":
+            return new OnlineTripsReaderChicago() {
+                @Override
+                protected TripRowParser compile(CsvSchema schema) {
+                    return this::parseByName;
+                }
+            };
+        case "compiled":
+            return new OnlineTripsReaderChicago();
+        default:
+            throw new IllegalArgumentException("unknown parser: " + name);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder optionsBuilder = new OptionsBuilder();
+        optionsBuilder.include(TripParsingBenchmark.class.getSimpleName());
+        optionsBuilder.addProfiler(GCProfiler.class);
+        /** arguments of the form name=value1,value2 */
+        for (String arg : args) {
+            String[] split = arg.split("=", 2);
+            if (split.length != 2)
+                throw new IllegalArgumentException("expected name=values: " + arg);
+            optionsBuilder.param(split[0], split[1].split(","));
+        }
+        new Runner(optionsBuilder.build()).run();
+    }
+}
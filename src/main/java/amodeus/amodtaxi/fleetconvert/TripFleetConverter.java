@@ -3,10 +3,8 @@ package amodeus.amodtaxi.fleetconvert;
 
 import java.io.File;
 import java.time.LocalDate;
-import java.util.Collection;
-import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import amodeus.amodeus.data.ReferenceFrame;
@@ -19,6 +17,7 @@ import amodeus.amodeus.util.AmodeusTimeConvert;
 import amodeus.amodeus.util.math.GlobalAssert;
 import amodeus.amodtaxi.population.TripPopulationCreator;
 import amodeus.amodtaxi.scenario.TaxiTripsSupplier;
+import amodeus.amodtaxi.taxitrip.TaxiTripTable;
 import amodeus.amodtaxi.tripfilter.TaxiTripFilterCollection;
 import amodeus.amodtaxi.tripmodif.TaxiDataModifier;
 import amodeus.amodtaxi.util.NamingConvention;
@@ -58,30 +57,42 @@ public abstract class TripFleetConverter {
     public void run(File processingDir, NamingConvention convention, LocalDate simulationDate, AmodeusTimeConvert timeConvert) throws Exception {
         targetDirectory.mkdirs();
 
-        Collection<TaxiTrip> allTrips = taxiTripsSupplier.get();
-        System.out.println("Before primary filter: " + allTrips.size());
-
-        /** filtering of trips, e.g., removal of 0 [s] trips */
-        Stream<TaxiTrip> filteredStream = primaryFilter.filterStream(allTrips.stream());
-        List<TaxiTrip> primaryFiltered = filteredStream.collect(Collectors.toList());
-        System.out.println("Primary filtered: " + primaryFiltered.size());
+        /** the trips are streamed from the supplier through the filters to the file and to a table,
+         * the following steps use the table instead of reading the files again */
+        AtomicInteger numAll = new AtomicInteger();
         String filteredFileName = convention.apply("filtered");
-        primaryFilter.printSummary();
-
         File filteredFile = new File(targetDirectory, filteredFileName);
-        ExportTaxiTrips.toFile(primaryFiltered.stream(), filteredFile); // parent directory must exist beforehand
+        TaxiTripTable filteredTrips = new TaxiTripTable();
+        try (Stream<TaxiTrip> allTrips = taxiTripsSupplier.stream()) {
+            /** filtering of trips, e.g., removal of 0 [s] trips */
+            Stream<TaxiTrip> filteredStream = primaryFilter.filterStream(allTrips.map(taxiTrip -> count(numAll, taxiTrip)));
+            ExportTaxiTrips.toFile(filteredStream.map(taxiTrip -> {
+                filteredTrips.add(taxiTrip);
+                return taxiTrip;
+            }), filteredFile); // parent directory must exist beforehand
+        }
+        System.out.println("Before primary filter: " + numAll.get());
+        System.out.println("Primary filtered: " + filteredTrips.size());
+        primaryFilter.printSummary();
         GlobalAssert.that(filteredFile.isFile());
 
         /** modifying the trip data, e.g., distributing in 15 minute steps. */
-        File modifiedTripsFile = contentModifier.modify(filteredFile);
+        TaxiTripTable modifiedTrips = contentModifier.modify(filteredTrips);
+        File modifiedTripsFile = new File(targetDirectory, NamingConvention.similarTo(filteredFile).apply("modified"));
+        ExportTaxiTrips.toFile(modifiedTrips.stream(), modifiedTripsFile);
         GlobalAssert.that(modifiedTripsFile.isFile());
 
-        /** creating population based on corrected, filtered file */
+        /** creating population based on corrected, filtered trips */
         TripPopulationCreator populationCreator = new TripPopulationCreator(processingDir, config, network, fastLinkLookup, simulationDate, timeConvert, finalFilters);
-        populationCreator.process(modifiedTripsFile);
+        populationCreator.process(modifiedTrips, new File(targetDirectory, NamingConvention.similarTo(modifiedTripsFile).apply("final")));
         finalTripsFile = populationCreator.getFinalTripFile();
     }
 
+    private static TaxiTrip count(AtomicInteger counter, TaxiTrip taxiTrip) {
+        counter.incrementAndGet();
+        return taxiTrip;
+    }
+
     public Optional<File> getFinalTripFile() {
         return Optional.ofNullable(finalTripsFile);
     }
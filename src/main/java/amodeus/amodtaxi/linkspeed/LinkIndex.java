@@ -0,0 +1,45 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+/** Dense index {0, ..., n - 1} of the n {@link Link}s of a {@link Network}, used
+ * to store link related data in primitive arrays. */
+public class LinkIndex {
+    private final Link[] links;
+    private final Map<Id<Link>, Integer> indices = new HashMap<>();
+
+    public LinkIndex(Network network) {
+        links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+        for (int i = 0; i < links.length; ++i)
+            indices.put(links[i].getId(), i);
+    }
+
+    /** @return number of links */
+    public int size() {
+        return links.length;
+    }
+
+    /** @return index of @param link
+     * @throws Exception if link is not part of the network */
+    public int indexOf(Link link) {
+        return indexOf(link.getId());
+    }
+
+    /** @return index of link with @param linkId
+     * @throws Exception if link is not part of the network */
+    public int indexOf(Id<Link> linkId) {
+        return Objects.requireNonNull(indices.get(linkId));
+    }
+
+    /** @return {@link Link} with @param index */
+    public Link link(int index) {
+        return links[index];
+    }
+}
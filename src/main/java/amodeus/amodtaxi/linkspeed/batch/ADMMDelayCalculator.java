@@ -0,0 +1,178 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.stream.IntStream;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+
+import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.alg.Array;
+
+/** Pure Java solver for the same problem as {@link GLPKLinOptDelayCalculator}, i.e., the
+ * non-negative delays x minimizing the L1 norm of the slacks |A x - deviation|, with the
+ * alternating direction method of multipliers (ADMM) on the splitting
+ *
+ * min |r|_1 subject to A x - r = deviation, x = z, z >= 0
+ *
+ * The x-update solves (A^T A + I) x = A^T (r + deviation - u) + z - w with conjugate gradients,
+ * the r-update is a soft thresholding and the z-update a projection onto the non-negative
+ * orthant. The sparse matrix-vector products run in parallel over the rows, no native library
+ * is required. */
+public class ADMMDelayCalculator implements TrafficDelayEstimate {
+    /** penalty 1, at most 20000 iterations, residuals below 1e-6 */
+    public static final ADMMDelayCalculator INSTANCE = new ADMMDelayCalculator(1.0, 20000, 1e-6);
+    private static final int MAX_CG_ITERATIONS = 100;
+
+    private final double rho;
+    private final int maxIterations;
+    private final double tolerance;
+
+    /** @param rho penalty parameter of the augmented Lagrangian, > 0
+     * @param maxIterations maximum number of ADMM iterations
+     * @param tolerance on the primal and dual residuals to stop the iterations */
+    public ADMMDelayCalculator(double rho, int maxIterations, double tolerance) {
+        GlobalAssert.that(0 < rho);
+        GlobalAssert.that(0 < maxIterations);
+        this.rho = rho;
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    @Override
+    public Tensor compute(Tensor flowMatrix, Tensor deviation) {
+        return compute(SparseFlowMatrix.of(flowMatrix), deviation);
+    }
+
+    @Override
+    public Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation) {
+        return compute(flowMatrix, deviation, Array.zeros(flowMatrix.cols()));
+    }
+
+    @Override
+    public Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation, Tensor initialDelays) {
+        System.out.println("Roads: " + flowMatrix.cols());
+        System.out.println("Trips: " + flowMatrix.rows());
+        long tStart = System.currentTimeMillis();
+        double[] delays = solve(flowMatrix, toArray(deviation), toArray(initialDelays));
+        System.out.println("Duration: " + (System.currentTimeMillis() - tStart) + " [ms]");
+        return Tensors.matrix((i, j) -> RealScalar.of(delays[i]), delays.length, 1);
+    }
+
+    /** @return non-negative delays for the @param flowMatrix and the @param deviation,
+     *         starting the iterations at @param initial */
+    /* package */ double[] solve(SparseFlowMatrix flowMatrix, double[] deviation, double[] initial) {
+        int numTrips = flowMatrix.rows();
+        int numRoads = flowMatrix.cols();
+        GlobalAssert.that(deviation.length == numTrips);
+        GlobalAssert.that(initial.length == numRoads);
+        SparseFlowMatrix transposed = flowMatrix.transpose();
+
+        double[] x = initial.clone();
+        double[] z = new double[numRoads];
+        double[] w = new double[numRoads];
+        for (int j = 0; j < numRoads; ++j)
+            z[j] = Math.max(0, x[j]);
+        double[] ax = multiply(flowMatrix, x);
+        double[] r = new double[numTrips];
+        double[] u = new double[numTrips];
+        for (int i = 0; i < numTrips; ++i)
+            r[i] = ax[i] - deviation[i];
+
+        double[] target = new double[numTrips];
+        int iteration = 0;
+        double primal = Double.POSITIVE_INFINITY;
+        double dual = Double.POSITIVE_INFINITY;
+        while (iteration < maxIterations && (tolerance <= primal || tolerance <= dual)) {
+            ++iteration;
+            /** x-update */
+            for (int i = 0; i < numTrips; ++i)
+                target[i] = r[i] + deviation[i] - u[i];
+            double[] rhs = multiply(transposed, target);
+            for (int j = 0; j < numRoads; ++j)
+                rhs[j] += z[j] - w[j];
+            conjugateGradient(flowMatrix, transposed, rhs, x);
+            ax = multiply(flowMatrix, x);
+
+            /** r-update, z-update and dual updates */
+            primal = 0;
+            dual = 0;
+            for (int i = 0; i < numTrips; ++i) {
+                double value = ax[i] - deviation[i] + u[i];
+                double rNew = Math.signum(value) * Math.max(0, Math.abs(value) - 1 / rho);
+                dual = Math.max(dual, rho * Math.abs(rNew - r[i]));
+                r[i] = rNew;
+                double residual = ax[i] - r[i] - deviation[i];
+                u[i] += residual;
+                primal = Math.max(primal, Math.abs(residual));
+            }
+            for (int j = 0; j < numRoads; ++j) {
+                double zNew = Math.max(0, x[j] + w[j]);
+                dual = Math.max(dual, rho * Math.abs(zNew - z[j]));
+                z[j] = zNew;
+                double residual = x[j] - z[j];
+                w[j] += residual;
+                primal = Math.max(primal, Math.abs(residual));
+            }
+        }
+        System.out.println("ADMM iterations: " + iteration + ", primal residual: " + primal + ", dual residual: " + dual);
+        return z;
+    }
+
+    /** solves (A^T A + I) x = @param rhs for x, starting at and overwriting @param x */
+    private static void conjugateGradient(SparseFlowMatrix matrix, SparseFlowMatrix transposed, double[] rhs, double[] x) {
+        double[] residual = normalProduct(matrix, transposed, x);
+        for (int j = 0; j < x.length; ++j)
+            residual[j] = rhs[j] - residual[j];
+        double[] direction = residual.clone();
+        double norm2 = dot(residual, residual);
+        double bound = 1e-20 * Math.max(dot(rhs, rhs), 1);
+        for (int count = 0; count < MAX_CG_ITERATIONS && bound < norm2; ++count) {
+            double[] product = normalProduct(matrix, transposed, direction);
+            double alpha = norm2 / dot(direction, product);
+            for (int j = 0; j < x.length; ++j) {
+                x[j] += alpha * direction[j];
+                residual[j] -= alpha * product[j];
+            }
+            double norm2New = dot(residual, residual);
+            double beta = norm2New / norm2;
+            for (int j = 0; j < x.length; ++j)
+                direction[j] = residual[j] + beta * direction[j];
+            norm2 = norm2New;
+        }
+    }
+
+    /** @return (A^T A + I) @param x */
+    private static double[] normalProduct(SparseFlowMatrix matrix, SparseFlowMatrix transposed, double[] x) {
+        double[] product = multiply(transposed, multiply(matrix, x));
+        for (int j = 0; j < x.length; ++j)
+            product[j] += x[j];
+        return product;
+    }
+
+    /** @return @param matrix times @param x, rows are processed in parallel */
+    private static double[] multiply(SparseFlowMatrix matrix, double[] x) {
+        double[] result = new double[matrix.rows()];
+        IntStream.range(0, matrix.rows()).parallel().forEach(i -> {
+            double sum = 0;
+            for (int k = matrix.rowStart(i); k < matrix.rowEnd(i); ++k)
+                sum += matrix.value(k) * x[matrix.column(k)];
+            result[i] = sum;
+        });
+        return result;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; ++i)
+            sum += a[i] * b[i];
+        return sum;
+    }
+
+    /** @return entries of @param tensor, a vector or a matrix with a single column */
+    private static double[] toArray(Tensor tensor) {
+        return tensor.flatten(-1).map(Scalar.class::cast).mapToDouble(s -> s.number().doubleValue()).toArray();
+    }
+}
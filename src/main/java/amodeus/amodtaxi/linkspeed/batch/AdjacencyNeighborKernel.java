@@ -0,0 +1,35 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+import amodeus.amodtaxi.linkspeed.NeighborKernel;
+
+/** The neighbors of a {@link Link} are the links it is connected to in the {@link Network}, i.e.,
+ * the links leaving its end node and the links entering its start node. The reverse link, i.e.,
+ * the opposite direction of the same road, is not a neighbor. Unlike the {@link ProximityNeighborKernel},
+ * no spatial query is required and parallel roads which are not connected are not mixed. */
+public enum AdjacencyNeighborKernel implements NeighborKernel {
+    INSTANCE;
+
+    @Override // from NeighborKernel
+    public Collection<Link> getNeighbors(Link link) {
+        List<Link> neighbors = new ArrayList<>();
+        for (Link next : link.getToNode().getOutLinks().values())
+            if (!isReverse(link, next))
+                neighbors.add(next);
+        for (Link previous : link.getFromNode().getInLinks().values())
+            if (!isReverse(link, previous))
+                neighbors.add(previous);
+        return neighbors;
+    }
+
+    private static boolean isReverse(Link link, Link other) {
+        return link.getFromNode().equals(other.getToNode()) && link.getToNode().equals(other.getFromNode());
+    }
+}
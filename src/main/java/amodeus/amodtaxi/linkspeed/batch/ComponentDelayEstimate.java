@@ -0,0 +1,199 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+
+import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.alg.Array;
+
+/** Trips which share no links form independent sub-problems. The connected components of
+ * the bipartite trip-link graph are found with union-find over the links, every component
+ * is solved with the wrapped {@link TrafficDelayEstimate} and the delays are stitched back
+ * together. Links without trips get a delay of 0. With a single thread, the components are
+ * solved one after another on the calling thread, otherwise on a {@link DelayWorkerPool}. */
+public class ComponentDelayEstimate implements TrafficDelayEstimate {
+    private static class Component {
+        private final IntStream.Builder rows = IntStream.builder();
+        private final IntStream.Builder cols = IntStream.builder();
+        private int nonZeros = 0;
+    }
+
+    // ---
+    private final TrafficDelayEstimate delayCalculator;
+    private final int numThreads;
+
+    /** @param delayCalculator solving the components, must support concurrent calls if
+     * @param numThreads is larger than 1, e.g., {@link ADMMDelayCalculator}, the native solver
+     *            of {@link GLPKLinOptDelayCalculator} is only reentrant if GLPK is built thread safe */
+    public ComponentDelayEstimate(TrafficDelayEstimate delayCalculator, int numThreads) {
+        GlobalAssert.that(0 < numThreads);
+        this.delayCalculator = delayCalculator;
+        this.numThreads = numThreads;
+    }
+
+    @Override
+    public Tensor compute(Tensor flowMatrix, Tensor deviation) {
+        return compute(SparseFlowMatrix.of(flowMatrix), deviation);
+    }
+
+    @Override
+    public Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation) {
+        return compute(flowMatrix, deviation, null);
+    }
+
+    /** the @param initialDelays are split along the components, null if not available */
+    @Override
+    public Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation, Tensor initialDelays) {
+        GlobalAssert.that(flowMatrix.rows() == deviation.length());
+        int[] parent = IntStream.range(0, flowMatrix.cols()).toArray();
+        int[] size = new int[flowMatrix.cols()];
+        Arrays.fill(size, 1);
+        for (int row = 0; row < flowMatrix.rows(); ++row)
+            for (int k = flowMatrix.rowStart(row) + 1; k < flowMatrix.rowEnd(row); ++k)
+                union(parent, size, flowMatrix.column(flowMatrix.rowStart(row)), flowMatrix.column(k));
+
+        /** components in order of their first trip, trips without links do not constrain any delay */
+        int[] componentOf = new int[flowMatrix.cols()];
+        Arrays.fill(componentOf, -1);
+        List<Component> components = new ArrayList<>();
+        for (int row = 0; row < flowMatrix.rows(); ++row)
+            if (flowMatrix.rowStart(row) < flowMatrix.rowEnd(row)) {
+                int root = find(parent, flowMatrix.column(flowMatrix.rowStart(row)));
+                if (componentOf[root] < 0) {
+                    componentOf[root] = components.size();
+                    components.add(new Component());
+                }
+                Component component = components.get(componentOf[root]);
+                component.rows.add(row);
+                component.nonZeros += flowMatrix.rowEnd(row) - flowMatrix.rowStart(row);
+            }
+        for (int col = 0; col < flowMatrix.cols(); ++col) {
+            int index = componentOf[find(parent, col)];
+            if (0 <= index)
+                components.get(index).cols.add(col);
+        }
+        System.out.println("Independent components: " + components.size());
+
+        if (components.isEmpty())
+            return Array.zeros(flowMatrix.cols(), 1);
+        if (components.size() == 1)
+            return compute(delayCalculator, flowMatrix, deviation, initialDelays);
+        return solve(flowMatrix, deviation, initialDelays, components);
+    }
+
+    private static Tensor compute(TrafficDelayEstimate delayCalculator, SparseFlowMatrix flowMatrix, Tensor deviation, Tensor initialDelays) {
+        return Objects.isNull(initialDelays) //
+                ? delayCalculator.compute(flowMatrix, deviation) //
+                : delayCalculator.compute(flowMatrix, deviation, initialDelays);
+    }
+
+    private Tensor solve(SparseFlowMatrix flowMatrix, Tensor deviation, Tensor initialDelays, List<Component> components) {
+        List<int[]> rows = components.stream().map(component -> component.rows.build().toArray()).collect(Collectors.toList());
+        List<int[]> cols = components.stream().map(component -> component.cols.build().toArray()).collect(Collectors.toList());
+        /** local column index of every link within its component */
+        int[] localCol = new int[flowMatrix.cols()];
+        for (int[] componentCols : cols)
+            for (int local = 0; local < componentCols.length; ++local)
+                localCol[componentCols[local]] = local;
+
+        /** the largest components are submitted first */
+        Integer[] order = IntStream.range(0, components.size()).boxed().toArray(Integer[]::new);
+        Arrays.sort(order, Comparator.comparingInt((Integer index) -> components.get(index).nonZeros).reversed());
+        List<Callable<Tensor>> tasks = new ArrayList<>();
+        for (int index : order) {
+            SparseFlowMatrix subMatrix = subMatrix(flowMatrix, rows.get(index), cols.get(index).length, localCol);
+            Tensor subDeviation = Tensor.of(IntStream.of(rows.get(index)).mapToObj(deviation::get));
+            Tensor subInitial = Objects.isNull(initialDelays) //
+                    ? null //
+                    : Tensor.of(IntStream.of(cols.get(index)).mapToObj(initialDelays::get));
+            tasks.add(() -> compute(delayCalculator, subMatrix, subDeviation, subInitial));
+        }
+        Tensor[] delays = new Tensor[components.size()];
+        if (numThreads == 1)
+            for (int i = 0; i < order.length; ++i)
+                try {
+                    delays[order[i]] = tasks.get(i).call();
+                } catch (Exception exception) {
+                    throw new RuntimeException(exception);
+                }
+        else {
+            ExecutorService executorService = DelayWorkerPool.of(delayCalculator, Math.min(numThreads, components.size()));
+            try {
+                List<Future<Tensor>> futures = executorService.invokeAll(tasks);
+                for (int i = 0; i < order.length; ++i)
+                    delays[order[i]] = futures.get(i).get();
+            } catch (InterruptedException | ExecutionException exception) {
+                throw new RuntimeException(exception);
+            } finally {
+                executorService.shutdown();
+            }
+        }
+
+        /** stitch the delays of the components, same form as returned by the delay calculator */
+        Tensor zero = delays[0].get(0) instanceof Scalar //
+                ? RealScalar.ZERO //
+                : Tensors.of(RealScalar.ZERO);
+        Tensor[] result = new Tensor[flowMatrix.cols()];
+        Arrays.fill(result, zero);
+        for (int index = 0; index < components.size(); ++index) {
+            int[] componentCols = cols.get(index);
+            for (int local = 0; local < componentCols.length; ++local)
+                result[componentCols[local]] = delays[index].get(local);
+        }
+        return Tensors.of(result);
+    }
+
+    /** @return rows @param rows of @param flowMatrix with columns mapped to @param localCol */
+    private static SparseFlowMatrix subMatrix(SparseFlowMatrix flowMatrix, int[] rows, int numCols, int[] localCol) {
+        int[] rowPtr = new int[rows.length + 1];
+        for (int i = 0; i < rows.length; ++i)
+            rowPtr[i + 1] = rowPtr[i] + flowMatrix.rowEnd(rows[i]) - flowMatrix.rowStart(rows[i]);
+        int[] colIdx = new int[rowPtr[rows.length]];
+        double[] values = new double[colIdx.length];
+        for (int i = 0; i < rows.length; ++i) {
+            int position = rowPtr[i];
+            for (int k = flowMatrix.rowStart(rows[i]); k < flowMatrix.rowEnd(rows[i]); ++k, ++position) {
+                colIdx[position] = localCol[flowMatrix.column(k)];
+                values[position] = flowMatrix.value(k);
+            }
+        }
+        return new SparseFlowMatrix(numCols, rowPtr, colIdx, values);
+    }
+
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+
+    private static void union(int[] parent, int[] size, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA == rootB)
+            return;
+        if (size[rootA] < size[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootB] = rootA;
+        size[rootA] += size[rootB];
+    }
+}
@@ -0,0 +1,24 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/** Worker pools for solving delay fits concurrently. The threads release the resources the
+ * {@link TrafficDelayEstimate} holds for them when they terminate, e.g., the environment
+ * of the native solver of {@link GLPKLinOptDelayCalculator}. */
+/* package */ enum DelayWorkerPool {
+    ;
+
+    /** @return pool of @param numThreads threads which call {@link TrafficDelayEstimate#releaseThread()}
+     *         of the @param delayCalculator before they terminate */
+    public static ExecutorService of(TrafficDelayEstimate delayCalculator, int numThreads) {
+        return Executors.newFixedThreadPool(numThreads, runnable -> new Thread(() -> {
+            try {
+                runnable.run();
+            } finally {
+                delayCalculator.releaseThread();
+            }
+        }));
+    }
+}
@@ -0,0 +1,217 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
+import amodeus.amodeus.net.MatsimAmodeusDatabase;
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import amodeus.amodeus.taxitrip.TaxiTripCheck;
+import amodeus.amodeus.util.math.GlobalAssert;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+import amodeus.amodtaxi.linkspeed.LinkIndex;
+import amodeus.amodtaxi.linkspeed.TaxiLinkSpeedEstimator;
+import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.alg.Array;
+import ch.ethz.idsc.tensor.qty.Quantity;
+
+/** Time dependent variant of {@link FlowTimeInvLinkSpeed}: the trips are assigned to hourly
+ * bins by their pickup time and one delay fit is solved per bin. Optionally, trips also enter
+ * the fits of the neighboring bins with a reduced weight. The bins can be solved concurrently,
+ * trips picked up after the last bin are omitted.
+ * Links covered in some bins only are completed with the speed of the nearest covered bin,
+ * links not covered at all are interpolated from their neighbors. */
+public class FlowTimeDepLinkSpeed implements TaxiLinkSpeedEstimator {
+    /** length of a time bin in [s] */
+    private static final int BIN_DURATION = 3600;
+    /** last time for which speeds are recorded */
+    private static final int MAX_TIME = 108000;
+    private static final int NUM_BINS = MAX_TIME / BIN_DURATION;
+
+    private static class BinSystem {
+        private final int bin;
+        /** links of the bin in order of their columns */
+        private final List<Link> links;
+        private final SparseFlowMatrix flowMatrix;
+        private final Tensor deviation;
+
+        private BinSystem(int bin, List<Link> links, SparseFlowMatrix flowMatrix, Tensor deviation) {
+            this.bin = bin;
+            this.links = links;
+            this.flowMatrix = flowMatrix;
+            this.deviation = deviation;
+        }
+    }
+
+    // ---
+    private final LinkSpeedDataContainer lsData = new LinkSpeedDataContainer();
+
+    /** no blending, bins are solved one after another with the @param delayCalculator */
+    public FlowTimeDepLinkSpeed(Collection<TaxiTrip> records, Network network, MatsimAmodeusDatabase db, //
+            TrafficDelayEstimate delayCalculator) {
+        this(records, network, db, delayCalculator, 0.0, 1);
+    }
+
+    /** @param blending weight in [0, 1) with which a trip enters the fits of the two neighboring bins,
+     *            0 assigns every trip to its own bin only
+     * @param numThreads number of bins solved concurrently, the @param delayCalculator must support
+     *            concurrent calls if larger than 1, e.g., {@link ADMMDelayCalculator} */
+    public FlowTimeDepLinkSpeed(Collection<TaxiTrip> records, Network network, MatsimAmodeusDatabase db, //
+            TrafficDelayEstimate delayCalculator, double blending, int numThreads) {
+        GlobalAssert.that(0 <= blending && blending < 1);
+        GlobalAssert.that(0 < numThreads);
+
+        /** ensure {@link TaxiTrip}s contain all required information */
+        GlobalAssert.that(records.stream().filter(TaxiTripCheck::isOfMinimalScope).count() == records.size());
+
+        /** compute the free flow path of every record and remove paths with trip duration < free flow duration */
+        LinkIndex linkIndex = new LinkIndex(network);
+        List<PathHandlerTimeInv> paths = PathHandlerTimeInv.of(records, network, db, linkIndex);
+        System.out.println("Totally found " + paths.size() + " paths for flow link speed computation.");
+        paths.removeIf(p -> !p.isValid());
+
+        /** assign the paths to the bins of their pickup time, relative to the start of the first day */
+        LocalDateTime start = paths.stream().map(p -> p.pickupTimeDate).min(Comparator.naturalOrder()) //
+                .orElseThrow(() -> new IllegalArgumentException("no valid trips")).toLocalDate().atStartOfDay();
+        List<List<PathHandlerTimeInv>> binPaths = new ArrayList<>();
+        for (int bin = 0; bin < NUM_BINS; ++bin)
+            binPaths.add(new ArrayList<>());
+        /** trips picked up after the last bin are not used */
+        int numLate = 0;
+        for (PathHandlerTimeInv ph : paths) {
+            long seconds = Duration.between(start, ph.pickupTimeDate).getSeconds();
+            if (seconds < MAX_TIME)
+                binPaths.get((int) (seconds / BIN_DURATION)).add(ph);
+            else
+                ++numLate;
+        }
+        if (0 < numLate)
+            System.err.println("Trips picked up after " + MAX_TIME + " [s] omitted: " + numLate);
+
+        /** one system per bin with trips, the largest systems are solved first */
+        List<BinSystem> systems = new ArrayList<>();
+        for (int bin = 0; bin < NUM_BINS; ++bin) {
+            BinSystem system = binSystem(bin, binPaths, blending, linkIndex);
+            if (0 < system.flowMatrix.rows())
+                systems.add(system);
+        }
+        systems.sort(Comparator.comparingInt((BinSystem system) -> system.flowMatrix.nonZeros()).reversed());
+
+        /** solve the bins on the worker pool, speeds[link][bin] is NaN if the link is not covered in the bin */
+        Map<Link, double[]> speeds = new LinkedHashMap<>();
+        ExecutorService executorService = DelayWorkerPool.of(delayCalculator, Math.min(numThreads, Math.max(1, systems.size())));
+        try {
+            List<Future<Tensor>> futures = new ArrayList<>();
+            for (BinSystem system : systems)
+                futures.add(executorService.submit(() -> delayCalculator.compute(system.flowMatrix, system.deviation)));
+            for (int index = 0; index < systems.size(); ++index) {
+                BinSystem system = systems.get(index);
+                Tensor delays = futures.get(index).get();
+                System.out.println("Solved bin " + system.bin + " with " + system.flowMatrix.rows() + " trips and " //
+                        + system.flowMatrix.cols() + " links.");
+                for (int col = 0; col < system.links.size(); ++col) {
+                    Link link = system.links.get(col);
+                    double delay = Math.max(0, delays.Get(col, 0).number().doubleValue());
+                    double speed = link.getLength() / (link.getLength() / link.getFreespeed() + delay);
+                    speeds.computeIfAbsent(link, l -> emptyProfile())[system.bin] = speed;
+                }
+            }
+        } catch (InterruptedException | ExecutionException exception) {
+            throw new RuntimeException(exception);
+        } finally {
+            executorService.shutdown();
+        }
+
+        /** complete bins without coverage with the nearest covered bin */
+        speeds.forEach((link, profile) -> {
+            double[] completed = complete(profile);
+            for (int bin = 0; bin < NUM_BINS; ++bin)
+                lsData.addData(link, bin * BIN_DURATION, completed[bin]);
+        });
+        System.out.println("Number of network links:       " + network.getLinks().size());
+        System.out.println("Number of covered links:       " + speeds.size());
+
+        /** Apply moving average filter to modify every link not solved in the previous step */
+        ProximityNeighborKernel filterKernel = new ProximityNeighborKernel(network, Quantity.of(2000, "m"));
+        new LinkSpeedDataInterpolation(network, filterKernel, lsData);
+    }
+
+    /** @return system of @param bin with the trips of the bin with weight 1 and the trips of the
+     *         neighboring bins with weight @param blending */
+    private static BinSystem binSystem(int bin, List<List<PathHandlerTimeInv>> binPaths, double blending, LinkIndex linkIndex) {
+        List<PathHandlerTimeInv> paths = new ArrayList<>(binPaths.get(bin));
+        int numOwn = paths.size();
+        if (0 < blending) {
+            if (0 < bin)
+                paths.addAll(binPaths.get(bin - 1));
+            if (bin < NUM_BINS - 1)
+                paths.addAll(binPaths.get(bin + 1));
+        }
+
+        /** local indices of the links in order of first occurrence */
+        int[] localLinkIndex = new int[linkIndex.size()];
+        Arrays.fill(localLinkIndex, -1);
+        List<Link> links = new ArrayList<>();
+        List<int[]> rows = new ArrayList<>(paths.size());
+        double[] weights = new double[paths.size()];
+        Tensor deviation = Array.zeros(paths.size(), 1);
+        for (int k = 0; k < paths.size(); ++k) {
+            PathHandlerTimeInv ph = paths.get(k);
+            for (int index : ph.travelledLinks)
+                if (localLinkIndex[index] < 0) {
+                    localLinkIndex[index] = links.size();
+                    links.add(linkIndex.link(index));
+                }
+            rows.add(IntStream.of(ph.travelledLinks).map(index -> localLinkIndex[index]).toArray());
+            /** a weighted row of the L1 fit is the row and its deviation scaled by the weight */
+            weights[k] = k < numOwn ? 1.0 : blending;
+            double tripDeviation = ph.duration.number().doubleValue() - ph.freeflowDuation.number().doubleValue();
+            deviation.set(RealScalar.of(weights[k] * tripDeviation), k, 0);
+        }
+        return new BinSystem(bin, links, SparseFlowMatrix.ofRows(links.size(), rows, weights), deviation);
+    }
+
+    private static double[] emptyProfile() {
+        double[] profile = new double[NUM_BINS];
+        Arrays.fill(profile, Double.NaN);
+        return profile;
+    }
+
+    /** @return @param profile with every NaN replaced by the value of the nearest bin with a value */
+    private static double[] complete(double[] profile) {
+        double[] completed = profile.clone();
+        for (int bin = 0; bin < NUM_BINS; ++bin)
+            if (Double.isNaN(profile[bin]))
+                for (int offset = 1; offset < NUM_BINS; ++offset) {
+                    if (0 <= bin - offset && !Double.isNaN(profile[bin - offset])) {
+                        completed[bin] = profile[bin - offset];
+                        break;
+                    }
+                    if (bin + offset < NUM_BINS && !Double.isNaN(profile[bin + offset])) {
+                        completed[bin] = profile[bin + offset];
+                        break;
+                    }
+                }
+        return completed;
+    }
+
+    @Override
+    public LinkSpeedDataContainer getLsData() {
+        return lsData;
+    }
+}
@@ -1,16 +1,16 @@
 /* amodeus - Copyright (c) 2018, ETH Zurich, Institute for Dynamic Systems and Control */
 package amodeus.amodtaxi.linkspeed.batch;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
+import amodeus.amodeus.linkspeed.LinkSpeedTimeSeries;
 import amodeus.amodeus.net.MatsimAmodeusDatabase;
-import amodeus.amodeus.taxitrip.ShortestDurationCalculator;
 import amodeus.amodeus.taxitrip.TaxiTrip;
 import amodeus.amodeus.taxitrip.TaxiTripCheck;
 import amodeus.amodeus.util.math.GlobalAssert;
@@ -18,6 +18,7 @@ import amodeus.amodeus.util.math.SI;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 
+import amodeus.amodtaxi.linkspeed.LinkIndex;
 import amodeus.amodtaxi.linkspeed.TaxiLinkSpeedEstimator;
 import ch.ethz.idsc.tensor.RealScalar;
 import ch.ethz.idsc.tensor.Scalar;
@@ -33,6 +34,27 @@ public class FlowTimeInvLinkSpeed implements TaxiLinkSpeedEstimator {
     public final static Scalar dayDt = Quantity.of(3600, SI.SECOND);
 
     public FlowTimeInvLinkSpeed(Collection<TaxiTrip> records, Network network, MatsimAmodeusDatabase db, TrafficDelayEstimate delayCalculator) {
+        this(records, network, db, delayCalculator, null);
+    }
+
+    /** @param numThreads number of independent components of the delay fit solved concurrently,
+     *            the @param delayCalculator must support concurrent calls if larger than 1,
+     *            e.g., {@link ADMMDelayCalculator}, see {@link ComponentDelayEstimate} */
+    public FlowTimeInvLinkSpeed(Collection<TaxiTrip> records, Network network, MatsimAmodeusDatabase db, //
+            TrafficDelayEstimate delayCalculator, int numThreads) {
+        this(records, network, db, delayCalculator, null, numThreads);
+    }
+
+    /** @param previous link speeds of an earlier computation, e.g., of the previous day, the delays
+     *            they imply are used to warm start the @param delayCalculator, null for a cold start */
+    public FlowTimeInvLinkSpeed(Collection<TaxiTrip> records, Network network, MatsimAmodeusDatabase db, //
+            TrafficDelayEstimate delayCalculator, LinkSpeedDataContainer previous) {
+        this(records, network, db, delayCalculator, previous, 1);
+    }
+
+    /** @param previous and @param numThreads as in the constructors above */
+    public FlowTimeInvLinkSpeed(Collection<TaxiTrip> records, Network network, MatsimAmodeusDatabase db, //
+            TrafficDelayEstimate delayCalculator, LinkSpeedDataContainer previous, int numThreads) {
 
         /** ensure {@link TaxiTrip}s contain all required information */
         GlobalAssert.that(records.stream().filter(TaxiTripCheck::isOfMinimalScope).count() == records.size());
@@ -40,57 +62,57 @@ public class FlowTimeInvLinkSpeed implements TaxiLinkSpeedEstimator {
         /** compute a path for every record, scale path such that end time
          * is as in the {@link TaxiTrip}, then break into parts as time
          * steps of recording */
-        ShortestDurationCalculator calc = new ShortestDurationCalculator(network, db);
-        Collection<PathHandlerTimeInv> paths = records.stream().map(tt -> new PathHandlerTimeInv(tt, calc)).collect(Collectors.toList());
+        LinkIndex linkIndex = new LinkIndex(network);
+        List<PathHandlerTimeInv> paths = PathHandlerTimeInv.of(records, network, db, linkIndex);
 
         System.out.println("Totally found " + paths.size() + " paths for flow link speed computation.");
 
         /** remove paths which trip duration > free flow duration */
         paths.removeIf(p -> !p.isValid());
 
-        /** record traveled links */
-        Set<Link> travelledLinks = paths.stream().flatMap(p -> p.travelledLinks.stream()).collect(Collectors.toSet());
-
-        HashMap<Integer, Link> localIndexLink = new HashMap<>();
-        HashMap<Link, Integer> localLinkIndex = new HashMap<>();
-        int j = 0;
-        for (Link link : travelledLinks) {
-            localIndexLink.put(j, link);
-            localLinkIndex.put(link, j);
-            ++j;
-        }
-        GlobalAssert.that(travelledLinks.size() == localIndexLink.size());
-
-        /** setup matrices A, b, solve pseudo-inverse */
-        int numEq = records.size();
-        int numVar = travelledLinks.size();
-
-        Tensor flowMatrix = Array.zeros(numEq, numVar);
+        /** record traveled links, local indices are assigned in order of first occurrence */
+        int[] localLinkIndex = new int[linkIndex.size()];
+        Arrays.fill(localLinkIndex, -1);
+        List<Link> localIndexLink = new ArrayList<>();
+        for (PathHandlerTimeInv ph : paths)
+            for (int index : ph.travelledLinks)
+                if (localLinkIndex[index] < 0) {
+                    localLinkIndex[index] = localIndexLink.size();
+                    localIndexLink.add(linkIndex.link(index));
+                }
+
+        /** setup sparse matrix A and vectors b, one row per valid path */
+        int numEq = paths.size();
+        int numVar = localIndexLink.size();
+
+        List<int[]> rows = new ArrayList<>(numEq);
         Tensor freeflowTripDuration = Array.zeros(numEq, 1);
         Tensor trafficTripDuration = Array.zeros(numEq, 1);
 
         int k = 0;
         for (PathHandlerTimeInv ph : paths) {
-            for (Link link : ph.travelledLinks) {
-                int index = localLinkIndex.get(link);
-                flowMatrix.set(RealScalar.ONE, k, index);
-            }
+            rows.add(IntStream.of(ph.travelledLinks).map(index -> localLinkIndex[index]).toArray());
             freeflowTripDuration.set(RealScalar.of(ph.freeflowDuation.number()), k, 0);
             trafficTripDuration.set(RealScalar.of(ph.duration.number()), k, 0);
             ++k;
         }
+        SparseFlowMatrix flowMatrix = SparseFlowMatrix.ofRows(numVar, rows);
+
+        /** delays of the previous computation in order of the local indices */
+        Tensor initialDelays = Objects.isNull(previous) //
+                ? null //
+                : Tensor.of(localIndexLink.stream().map(link -> RealScalar.of(previousDelay(link, previous))));
 
         /** flow based traffic estimation */
         FlowTrafficEstimation estimation = //
-                FlowTrafficEstimation.of(flowMatrix, freeflowTripDuration, trafficTripDuration, delayCalculator);
+                FlowTrafficEstimation.of(flowMatrix, freeflowTripDuration, trafficTripDuration, delayCalculator, initialDelays, numThreads);
 
         Tensor estimateTravelTimeLinkDelays = Objects.requireNonNull(estimation).trafficDelays; // trafficTravelTimeEstimates();
 
         int nwLinks = network.getLinks().size();
         System.out.println("Number of network links:       " + nwLinks);
-        List<Integer> dims = Dimensions.of(flowMatrix);
-        System.out.println("Number of covered links:       " + dims.get(1) + "(" + dims.get(1) / ((double) nwLinks) + ")");
-        System.out.println("Trips used for calculation:    " + dims.get(0));
+        System.out.println("Number of covered links:       " + flowMatrix.cols() + "(" + flowMatrix.cols() / ((double) nwLinks) + ")");
+        System.out.println("Trips used for calculation:    " + flowMatrix.rows());
 
         if (verbose) { // enabling these prints will result in very substantial workload...
             System.out.println("trafficDelays:              " + Dimensions.of(estimation.trafficDelays));
@@ -166,6 +188,18 @@ public class FlowTimeInvLinkSpeed implements TaxiLinkSpeedEstimator {
         new LinkSpeedDataInterpolation(network, filterKernel, lsData);
     }
 
+    /** @return delay of @param link implied by its mean recorded speed in @param previous,
+     *         0 if the link has no recordings */
+    private static double previousDelay(Link link, LinkSpeedDataContainer previous) {
+        LinkSpeedTimeSeries series = previous.get(link);
+        if (Objects.isNull(series) || series.getRecordedTimes().isEmpty())
+            return 0;
+        double meanSpeed = series.getRecordedTimes().stream().mapToDouble(series::getSpeedsAt).average().getAsDouble();
+        if (meanSpeed <= 0)
+            return 0;
+        return Math.max(0, link.getLength() / meanSpeed - link.getLength() / link.getFreespeed());
+    }
+
     @Override
     public LinkSpeedDataContainer getLsData() {
         return lsData;
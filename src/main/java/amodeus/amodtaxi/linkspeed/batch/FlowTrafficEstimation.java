@@ -3,11 +3,12 @@ package amodeus.amodtaxi.linkspeed.batch;
 
 import java.util.Objects;
 
+import amodeus.amodeus.util.math.GlobalAssert;
+
 import ch.ethz.idsc.tensor.RealScalar;
 import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Scalars;
 import ch.ethz.idsc.tensor.Tensor;
-import ch.ethz.idsc.tensor.alg.VectorQ;
 import ch.ethz.idsc.tensor.io.Export;
 import ch.ethz.idsc.tensor.io.HomeDirectory;
 import ch.ethz.idsc.tensor.red.Mean;
@@ -16,15 +17,40 @@ import ch.ethz.idsc.tensor.red.Norm;
 public class FlowTrafficEstimation {
 
     /** calculates traffic delays for links {1,...,m} for trips on n routes
-     * as defined in the @param flowMatrix of dimension m x n with free flow travel
+     * as defined in the @param flowMatrix of dimension n x m with free flow travel
      * times @param freeTimes and recorded (with congestion) travel times @param trafficTimes
      * from free flow. For the computation, a {@link TrafficDelayEstimate} @param delayCalculator is
-     * required.
+     * required. Independent components of the problem are solved one after another, see
+     * {@link ComponentDelayEstimate}.
      * 
      * @throws Exception */
-    public static FlowTrafficEstimation of(Tensor flowMatrix, Tensor freeTimes, Tensor trafficTimes, TrafficDelayEstimate delayCalculator) {
+    public static FlowTrafficEstimation of(SparseFlowMatrix flowMatrix, Tensor freeTimes, Tensor trafficTimes, TrafficDelayEstimate delayCalculator) {
+        return of(flowMatrix, freeTimes, trafficTimes, delayCalculator, null);
+    }
+
+    /** calculates traffic delays as {@link #of(SparseFlowMatrix, Tensor, Tensor, TrafficDelayEstimate)}
+     * with independent components solved by @param numThreads threads, the @param delayCalculator must
+     * support concurrent calls if larger than 1, e.g., {@link ADMMDelayCalculator} */
+    public static FlowTrafficEstimation of(SparseFlowMatrix flowMatrix, Tensor freeTimes, Tensor trafficTimes, //
+            TrafficDelayEstimate delayCalculator, int numThreads) {
+        return of(flowMatrix, freeTimes, trafficTimes, delayCalculator, null, numThreads);
+    }
+
+    /** calculates traffic delays as {@link #of(SparseFlowMatrix, Tensor, Tensor, TrafficDelayEstimate)}
+     * starting from the @param initialDelays, a vector with one delay per link, e.g., of a previous day,
+     * or null */
+    public static FlowTrafficEstimation of(SparseFlowMatrix flowMatrix, Tensor freeTimes, Tensor trafficTimes, //
+            TrafficDelayEstimate delayCalculator, Tensor initialDelays) {
+        return of(flowMatrix, freeTimes, trafficTimes, delayCalculator, initialDelays, 1);
+    }
+
+    /** calculates traffic delays as {@link #of(SparseFlowMatrix, Tensor, Tensor, TrafficDelayEstimate, Tensor)}
+     * with independent components solved by @param numThreads threads, see
+     * {@link #of(SparseFlowMatrix, Tensor, Tensor, TrafficDelayEstimate, int)} */
+    public static FlowTrafficEstimation of(SparseFlowMatrix flowMatrix, Tensor freeTimes, Tensor trafficTimes, //
+            TrafficDelayEstimate delayCalculator, Tensor initialDelays, int numThreads) {
         try {
-            return new FlowTrafficEstimation(flowMatrix, freeTimes, trafficTimes, delayCalculator);
+            return new FlowTrafficEstimation(flowMatrix, freeTimes, trafficTimes, delayCalculator, initialDelays, numThreads);
         } catch (Exception e) {
             System.err.println("LSQTrafficEstimation failed:");
             e.printStackTrace();
@@ -32,22 +58,31 @@ public class FlowTrafficEstimation {
         }
     }
 
+    /** calculates traffic delays as {@link #of(SparseFlowMatrix, Tensor, Tensor, TrafficDelayEstimate)}
+     * for a dense @param flowMatrix */
+    public static FlowTrafficEstimation of(Tensor flowMatrix, Tensor freeTimes, Tensor trafficTimes, TrafficDelayEstimate delayCalculator) {
+        return of(SparseFlowMatrix.of(flowMatrix), freeTimes, trafficTimes, delayCalculator);
+    }
+
     // --
 
     public final Tensor trafficDelays;
 
     private final Tensor freeTimes;
     private final Tensor trafficTimes;
-    private final Tensor flowMatrix;
+    private final SparseFlowMatrix flowMatrix;
 
     private Tensor trafficTravelTimeEstimates = null;
     private Scalar error = null;
 
-    private FlowTrafficEstimation(Tensor flowMatrix, Tensor freeTimes, Tensor trafficTimes, //
-            TrafficDelayEstimate delayCalculator) throws Exception {
+    private FlowTrafficEstimation(SparseFlowMatrix flowMatrix, Tensor freeTimes, Tensor trafficTimes, //
+            TrafficDelayEstimate delayCalculator, Tensor initialDelays, int numThreads) throws Exception {
+        /** times are given as vectors or as matrices with a single column, one entry per trip */
+        GlobalAssert.that(freeTimes.length() == flowMatrix.rows());
+        GlobalAssert.that(trafficTimes.length() == flowMatrix.rows());
 
-        this.freeTimes = VectorQ.require(freeTimes);
-        this.trafficTimes = VectorQ.require(trafficTimes);
+        this.freeTimes = freeTimes;
+        this.trafficTimes = trafficTimes;
         this.flowMatrix = flowMatrix;
         Tensor deviation = trafficTimes.subtract(freeTimes);
 
@@ -64,7 +99,9 @@ public class FlowTrafficEstimation {
         System.out.println("===");
         // System.exit(1);
 
-        trafficDelays = delayCalculator.compute(flowMatrix, deviation).unmodifiable();
+        /** independent sub-problems are solved separately */
+        TrafficDelayEstimate decomposed = new ComponentDelayEstimate(delayCalculator, numThreads);
+        trafficDelays = decomposed.compute(flowMatrix, deviation, initialDelays).unmodifiable();
     }
 
     public Scalar getError() {
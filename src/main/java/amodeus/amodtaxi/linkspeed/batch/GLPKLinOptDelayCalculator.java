@@ -3,7 +3,7 @@ package amodeus.amodtaxi.linkspeed.batch;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.util.Objects;
 
 import amodeus.amodeus.util.math.GlobalAssert;
 import org.gnu.glpk.GLPK;
@@ -14,177 +14,217 @@ import org.gnu.glpk.glp_prob;
 import org.gnu.glpk.glp_smcp;
 
 import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Tensor;
 import ch.ethz.idsc.tensor.Tensors;
-import ch.ethz.idsc.tensor.alg.Dimensions;
 import ch.ethz.idsc.tensor.io.Export;
 import ch.ethz.idsc.tensor.io.HomeDirectory;
 
+/** Solves the slack-penalized L1 fit of the deviations with the GLPK simplex. The constraint
+ * matrix is assembled from the nonzeros only and loaded into GLPK in a single call. */
 public enum GLPKLinOptDelayCalculator implements TrafficDelayEstimate {
-    INSTANCE;
+    INSTANCE(false),
+    /** additionally names all rows and columns, writes the LP to debugLP.lp and exports
+     * the delays and slacks as CSV to the desktop */
+    DEBUG(true);
+
+    private final boolean debug;
+
+    private GLPKLinOptDelayCalculator(boolean debug) {
+        this.debug = debug;
+    }
+
+    /** frees the GLPK environment of the calling thread, GLPK allocates one per thread */
+    @Override
+    public void releaseThread() {
+        GLPK.glp_free_env();
+    }
 
     @Override
     public Tensor compute(Tensor flowMatrix, Tensor deviation) {
+        return compute(SparseFlowMatrix.of(flowMatrix), deviation);
+    }
+
+    @Override
+    public Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation) {
+        return solve(flowMatrix, deviation, null);
+    }
+
+    /** the @param initialDelays define a starting basis of the simplex, if the basis is invalid,
+     * GLPK's advanced initial basis is used instead */
+    @Override
+    public Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation, Tensor initialDelays) {
+        return solve(flowMatrix, deviation, //
+                initialDelays.flatten(-1).map(Scalar.class::cast).mapToDouble(s -> s.number().doubleValue()).toArray());
+    }
+
+    /** @param initialDelays null for the standard initial basis */
+    private Tensor solve(SparseFlowMatrix flowMatrix, Tensor deviation, double[] initialDelays) {
 
         /** problem characteristics */
-        List<Integer> dims = Dimensions.of(flowMatrix);
-        int numRoads = dims.get(1);
-        int numTrips = dims.get(0);
+        int numRoads = flowMatrix.cols();
+        int numTrips = flowMatrix.rows();
         // TODO pRoad is not used
         // double pRoad = 1.0;
         double pSlack = 10000.0;
         System.out.println("Dimensions: ");
         System.out.println("Roads: " + numRoads);
         System.out.println("Trips: " + numTrips);
-        GlobalAssert.that(dims.get(0) == deviation.length());
+        GlobalAssert.that(numTrips == deviation.length());
         long tStart = System.currentTimeMillis();
 
-        /** setting up the LP */
-        glp_prob lp;
-        glp_smcp parm; // Unsure what this does
-        SWIGTYPE_p_int ind;
-        SWIGTYPE_p_double val;
-        int retour;
-
-        lp = GLPK.glp_create_prob(); // Create Problem and assign to problem variable lp
-        System.out.println("Problem Created");
+        /** setting up the LP, columns: roads x, slacks s, absolute slacks z */
+        glp_prob lp = GLPK.glp_create_prob();
         GLPK.glp_set_prob_name(lp, "Traffic Flow LP");
-
-        /** variables for roads */
-        GLPK.glp_add_cols(lp, numRoads);
-        for (int i = 1; i <= numRoads; ++i) {
-            String name = "x" + i;
-            GLPK.glp_set_col_name(lp, i, name);
-            GLPK.glp_set_col_kind(lp, i, GLPKConstants.GLP_CV); // stands for continuous variable variable
-            GLPK.glp_set_col_bnds(lp, i, GLPKConstants.GLP_LO, 0.0, 10);
-        }
-
-        /** one slack variable per constraint */
-        GLPK.glp_add_cols(lp, numTrips);
-        for (int i = numRoads + 1; i <= numRoads + numTrips; ++i) {
-            String name = "s" + (i - numRoads);
-            GLPK.glp_set_col_name(lp, i, name);
-            GLPK.glp_set_col_kind(lp, i, GLPKConstants.GLP_CV); // stands for continuous variable variable
-            GLPK.glp_set_col_bnds(lp, i, GLPKConstants.GLP_FR, 0.0, 10);
-        }
-
-        /** one additional variable to have the absolute value of the slack variable in the
-         * objective function */
-        GLPK.glp_add_cols(lp, numTrips);
-        for (int i = numRoads + numTrips + 1; i <= numRoads + numTrips + numTrips; ++i) {
-            String name = "z" + (i - numRoads - numTrips);
-            GLPK.glp_set_col_name(lp, i, name);
-            GLPK.glp_set_col_kind(lp, i, GLPKConstants.GLP_CV); // stands for continuous variable variable
-            GLPK.glp_set_col_bnds(lp, i, GLPKConstants.GLP_LO, 0.0, 10);
-        }
-
-        /** flow constraints */
-        GLPK.glp_add_rows(lp, numTrips);
-        // int arraySize = numRoads + 2 * numTrips + 2;
-        int arraySize = numRoads + numTrips;
+        GLPK.glp_add_cols(lp, numRoads + 2 * numTrips);
+        /** columns are continuous by default, roads and absolute slacks non-negative, slacks free */
+        for (int i = 1; i <= numRoads; ++i)
+            GLPK.glp_set_col_bnds(lp, i, GLPKConstants.GLP_LO, 0.0, 0.0);
+        for (int i = numRoads + 1; i <= numRoads + numTrips; ++i)
+            GLPK.glp_set_col_bnds(lp, i, GLPKConstants.GLP_FR, 0.0, 0.0);
+        for (int i = numRoads + numTrips + 1; i <= numRoads + 2 * numTrips; ++i)
+            GLPK.glp_set_col_bnds(lp, i, GLPKConstants.GLP_LO, 0.0, 0.0);
+
+        /** rows: flow constraints A x + s = deviation, then s - z <= 0 and -s - z <= 0 */
+        GLPK.glp_add_rows(lp, 3 * numTrips);
         for (int i = 1; i <= numTrips; ++i) {
-            // name of constraint
-            GLPK.glp_set_row_name(lp, i, ("TripConstr" + i)); // We are setting an Auxiliary Variable
-            // right hand side
             double rhs = deviation.Get(i - 1, 0).number().doubleValue();
-            GLPK.glp_set_row_bnds(lp, i, GLPKConstants.GLP_FX, rhs, 1); // We are setting a Double Bound (lower: 0, upper: 1)
-            // initialize arrays
-            ind = GLPK.new_intArray(arraySize); // TODO Change no of elements, Indexes
-            val = GLPK.new_doubleArray(arraySize); // TODO change no of elements, Values
-            // flow defines multiplier for variable
-            Tensor flow = flowMatrix.get(i - 1);
-            for (int j = 1; j <= numRoads; ++j) {
-                int value = flow.Get(j - 1).number().intValue();
-                GLPK.intArray_setitem(ind, j, j); // First element is x11 * 1
-                GLPK.doubleArray_setitem(val, j, value);
-            }
-            // adding 1 slack variable to each constraint to ensure feasibility
-            GLPK.intArray_setitem(ind, (1 + numRoads), (i + numRoads)); // First element is x11 * 1
-            GLPK.doubleArray_setitem(val, (1 + numRoads), 1.0);
-            // add constraints
-            GLPK.glp_set_mat_row(lp, i, (1 + numRoads), ind, val);
-            GLPK.delete_intArray(ind);
-            GLPK.delete_doubleArray(val);
+            GLPK.glp_set_row_bnds(lp, i, GLPKConstants.GLP_FX, rhs, rhs);
+            GLPK.glp_set_row_bnds(lp, i + numTrips, GLPKConstants.GLP_UP, 0.0, 0.0);
+            GLPK.glp_set_row_bnds(lp, i + 2 * numTrips, GLPKConstants.GLP_UP, 0.0, 0.0);
         }
 
-        /** constraints to ensure minimzation of absolute value, si - zi <=0 */
-        GLPK.glp_add_rows(lp, 2 * numTrips);
+        /** constraint matrix in coordinate format, GLPK arrays are 1-based */
+        int numEntries = flowMatrix.nonZeros() + 5 * numTrips;
+        SWIGTYPE_p_int ia = GLPK.new_intArray(numEntries + 1);
+        SWIGTYPE_p_int ja = GLPK.new_intArray(numEntries + 1);
+        SWIGTYPE_p_double ar = GLPK.new_doubleArray(numEntries + 1);
+        int entry = 0;
         for (int i = 1; i <= numTrips; ++i) {
-            int constraintindex = i + numTrips;
-            int constraintindex2 = i + numTrips * 2;
-
-            // set constraint si-zi <= 0
-            GLPK.glp_set_row_name(lp, constraintindex, ("SlackConstrUp" + (constraintindex - numTrips)));
-            GLPK.glp_set_row_bnds(lp, constraintindex, GLPKConstants.GLP_UP, -2.3215, 0.0); // We are setting a Double Bound (lower: 0, upper: 1)
-            ind = GLPK.new_intArray(3);
-            val = GLPK.new_doubleArray(3);
-            GLPK.intArray_setitem(ind, 1, i + numRoads);
-            GLPK.doubleArray_setitem(val, 1, 1.0);
-            GLPK.intArray_setitem(ind, 2, i + numRoads + numTrips);
-            GLPK.doubleArray_setitem(val, 2, -1.0);
-            GLPK.glp_set_mat_row(lp, constraintindex, 2, ind, val);
-            GLPK.delete_intArray(ind);
-            GLPK.delete_doubleArray(val);
-
-            // set constraint -si-zi <= 0
-            GLPK.glp_set_row_name(lp, constraintindex2, ("SlackConstrUp" + (constraintindex2 - numTrips)));
-            GLPK.glp_set_row_bnds(lp, constraintindex2, GLPKConstants.GLP_UP, -2.3215, 0.0); // We are setting a Double Bound (lower: 0, upper: 1)
-            ind = GLPK.new_intArray(3);
-            val = GLPK.new_doubleArray(3);
-            GLPK.intArray_setitem(ind, 1, i + numRoads);
-            GLPK.doubleArray_setitem(val, 1, -1.0);
-            GLPK.intArray_setitem(ind, 2, i + numRoads + numTrips);
-            GLPK.doubleArray_setitem(val, 2, -1.0);
-            GLPK.glp_set_mat_row(lp, constraintindex2, 2, ind, val);
-            GLPK.delete_intArray(ind);
-            GLPK.delete_doubleArray(val);
+            int slack = i + numRoads;
+            int absSlack = i + numRoads + numTrips;
+            /** flow defines multiplier for variable, only the nonzeros of the row are set */
+            for (int k = flowMatrix.rowStart(i - 1); k < flowMatrix.rowEnd(i - 1); ++k)
+                setEntry(ia, ja, ar, ++entry, i, flowMatrix.column(k) + 1, flowMatrix.value(k));
+            /** adding 1 slack variable to each constraint to ensure feasibility */
+            setEntry(ia, ja, ar, ++entry, i, slack, 1.0);
+            /** constraints to ensure minimization of the absolute value of the slack */
+            setEntry(ia, ja, ar, ++entry, i + numTrips, slack, 1.0);
+            setEntry(ia, ja, ar, ++entry, i + numTrips, absSlack, -1.0);
+            setEntry(ia, ja, ar, ++entry, i + 2 * numTrips, slack, -1.0);
+            setEntry(ia, ja, ar, ++entry, i + 2 * numTrips, absSlack, -1.0);
         }
+        GlobalAssert.that(entry == numEntries);
+        GLPK.glp_load_matrix(lp, numEntries, ia, ja, ar);
+        GLPK.delete_intArray(ia);
+        GLPK.delete_intArray(ja);
+        GLPK.delete_doubleArray(ar);
 
-        /** objective function, simple minimization of sum_i(xi) */
+        /** objective function, minimization of the weighted absolute slacks */
         GLPK.glp_set_obj_name(lp, "MinimalDeviations");
         GLPK.glp_set_obj_dir(lp, GLPKConstants.GLP_MIN);
         // // cost for road variables
         // for (int i = 1; i <= numRoads; ++i) {
-        // GLPK.glp_set_obj_coef(lp, i, -1);
         // GLPK.glp_set_obj_coef(lp, i, pRoad);
         // }
-
-        // cost for slack variables
-        for (int i = numRoads + numTrips + 1; i <= numRoads + 2 * numTrips; ++i) {
-            GLPK.glp_set_obj_coef(lp, i, -1);
+        for (int i = numRoads + numTrips + 1; i <= numRoads + 2 * numTrips; ++i)
             GLPK.glp_set_obj_coef(lp, i, pSlack);
-        }
 
-        /** Solving and writing to file */
-        parm = new glp_smcp();
-        GLPK.glp_init_smcp(parm);
-        retour = GLPK.glp_simplex(lp, parm);
+        if (debug)
+            setNames(lp, numRoads, numTrips);
+        System.out.println("Model built: " + (System.currentTimeMillis() - tStart) + " [ms]");
 
-        // Retrieve solution
-        if (retour == 0) {
-            // solution found
-        } else {
+        /** Solving */
+        if (Objects.nonNull(initialDelays))
+            warmStart(lp, flowMatrix, deviation, initialDelays);
+        long tSolve = System.currentTimeMillis();
+        glp_smcp parm = new glp_smcp();
+        GLPK.glp_init_smcp(parm);
+        int retour = GLPK.glp_simplex(lp, parm);
+        if (retour != 0)
             System.out.println("The problem could not be solved");
-        }
-
-        File file = HomeDirectory.Desktop("debugLP.lp");
-        GLPK.glp_write_lp(lp, null, file.getAbsolutePath());
+        System.out.println("Simplex iterations: " + GLPK.glp_get_it_cnt(lp) + ", solve time: " //
+                + (System.currentTimeMillis() - tSolve) + " [ms]" + (Objects.nonNull(initialDelays) ? " (warm start)" : ""));
 
         Tensor trafficDelay = Tensors.matrix((i, j) -> (RealScalar.of(GLPK.glp_get_col_prim(lp, i + 1))), numRoads, 1);
-        Tensor slack = Tensors.matrix((i, j) -> (RealScalar.of(GLPK.glp_get_col_prim(lp, i + 1 + numRoads))), numTrips, 1);
-        lp.delete();
-
-        try {
-
-            Export.of(HomeDirectory.Desktop("trafficDelayGLPK.csv"), trafficDelay);
-            Export.of(HomeDirectory.Desktop("trafficDelayGLPKslack.csv"), slack);
-        } catch (IOException e) {
-            e.printStackTrace();
+        if (debug) {
+            File file = HomeDirectory.Desktop("debugLP.lp");
+            GLPK.glp_write_lp(lp, null, file.getAbsolutePath());
+            Tensor slack = Tensors.matrix((i, j) -> (RealScalar.of(GLPK.glp_get_col_prim(lp, i + 1 + numRoads))), numTrips, 1);
+            try {
+                Export.of(HomeDirectory.Desktop("trafficDelayGLPK.csv"), trafficDelay);
+                Export.of(HomeDirectory.Desktop("trafficDelayGLPKslack.csv"), slack);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
         }
+        GLPK.glp_delete_prob(lp);
 
         System.out.println("Duration: " + (System.currentTimeMillis() - tStart) + " [ms]");
 
         return trafficDelay;
     }
 
+    /** sets a starting basis derived from the @param initialDelays: roads with positive delay are basic,
+     * trips with nonzero residual have basic slack and absolute slack, the inactive absolute value
+     * row is basic. Trips fitted exactly have a non-basic slack as long as there are more basic roads
+     * than trips fitted exactly, otherwise a basic slack. If the basis is singular or the number of
+     * basic variables does not match, the advanced initial basis of GLPK is used instead. */
+    private static void warmStart(glp_prob lp, SparseFlowMatrix flowMatrix, Tensor deviation, double[] initialDelays) {
+        int numRoads = flowMatrix.cols();
+        int numTrips = flowMatrix.rows();
+        GlobalAssert.that(initialDelays.length == numRoads);
+        int numBasicRoads = 0;
+        for (int j = 1; j <= numRoads; ++j)
+            if (0 < initialDelays[j - 1]) {
+                GLPK.glp_set_col_stat(lp, j, GLPKConstants.GLP_BS);
+                ++numBasicRoads;
+            } else
+                GLPK.glp_set_col_stat(lp, j, GLPKConstants.GLP_NL);
+        double[] residuals = flowMatrix.dot(initialDelays);
+        int numNonBasicSlacks = 0;
+        for (int i = 1; i <= numTrips; ++i) {
+            double residual = deviation.Get(i - 1, 0).number().doubleValue() - residuals[i - 1];
+            int slack = numRoads + i;
+            int absSlack = numRoads + numTrips + i;
+            GLPK.glp_set_row_stat(lp, i, GLPKConstants.GLP_NS);
+            if (1e-9 < Math.abs(residual)) {
+                GLPK.glp_set_col_stat(lp, slack, GLPKConstants.GLP_BS);
+                GLPK.glp_set_col_stat(lp, absSlack, GLPKConstants.GLP_BS);
+                GLPK.glp_set_row_stat(lp, numTrips + i, 0 < residual ? GLPKConstants.GLP_NU : GLPKConstants.GLP_BS);
+                GLPK.glp_set_row_stat(lp, 2 * numTrips + i, 0 < residual ? GLPKConstants.GLP_BS : GLPKConstants.GLP_NU);
+            } else {
+                boolean nonBasicSlack = numNonBasicSlacks < numBasicRoads;
+                if (nonBasicSlack)
+                    ++numNonBasicSlacks;
+                GLPK.glp_set_col_stat(lp, slack, nonBasicSlack ? GLPKConstants.GLP_NF : GLPKConstants.GLP_BS);
+                GLPK.glp_set_col_stat(lp, absSlack, GLPKConstants.GLP_NL);
+                GLPK.glp_set_row_stat(lp, numTrips + i, GLPKConstants.GLP_BS);
+                GLPK.glp_set_row_stat(lp, 2 * numTrips + i, GLPKConstants.GLP_BS);
+            }
+        }
+        if (numNonBasicSlacks != numBasicRoads || GLPK.glp_factorize(lp) != 0) {
+            System.out.println("Initial delays do not define a valid basis, using advanced initial basis.");
+            GLPK.glp_adv_basis(lp, 0);
+        }
+    }
+
+    private static void setEntry(SWIGTYPE_p_int ia, SWIGTYPE_p_int ja, SWIGTYPE_p_double ar, int entry, int row, int col, double value) {
+        GLPK.intArray_setitem(ia, entry, row);
+        GLPK.intArray_setitem(ja, entry, col);
+        GLPK.doubleArray_setitem(ar, entry, value);
+    }
+
+    /** names of rows and columns, only required to read the LP dump */
+    private static void setNames(glp_prob lp, int numRoads, int numTrips) {
+        for (int i = 1; i <= numRoads; ++i)
+            GLPK.glp_set_col_name(lp, i, "x" + i);
+        for (int i = 1; i <= numTrips; ++i) {
+            GLPK.glp_set_col_name(lp, numRoads + i, "s" + i);
+            GLPK.glp_set_col_name(lp, numRoads + numTrips + i, "z" + i);
+            GLPK.glp_set_row_name(lp, i, "TripConstr" + i);
+            GLPK.glp_set_row_name(lp, numTrips + i, "SlackConstrUp" + i);
+            GLPK.glp_set_row_name(lp, 2 * numTrips + i, "SlackConstrLo" + i);
+        }
+    }
 }
@@ -0,0 +1,134 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
+
+import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
+import amodeus.amodeus.linkspeed.LinkSpeedTimeSeries;
+import amodeus.amodeus.util.math.GlobalAssert;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+import amodeus.amodtaxi.linkspeed.LinkIndex;
+
+/** Alternative to the {@link LinkSpeedDataInterpolation} which completes the link speeds by
+ * diffusion over the link graph: the recorded speed ratios (speed / free speed) are fixed, every
+ * other link and time takes the mean ratio of its adjacent links, see {@link AdjacencyNeighborKernel}.
+ * The passes are Jacobi iterations, i.e., all links are updated in parallel from the values of the
+ * previous pass. After k passes, ratios have traveled at most k links from the recordings, the
+ * iterations stop after the maximum number of passes or once the largest change is below the
+ * tolerance. Links not reached from any recording keep no recordings. */
+public class LinkSpeedDataDiffusion {
+
+    /** completes the link speeds in @param lsData for all links of @param network with at most
+     * @param maxPasses passes, stops earlier if no ratio changes by more than @param tolerance */
+    public static void apply(Network network, LinkSpeedDataContainer lsData, int maxPasses, double tolerance) {
+        LinkIndex linkIndex = new LinkIndex(network);
+        new LinkSpeedDataDiffusion(linkIndex, NeighborIndex.of(linkIndex, AdjacencyNeighborKernel.INSTANCE), lsData, maxPasses, tolerance);
+    }
+
+    private final LinkIndex linkIndex;
+    private final NeighborIndex neighborIndex;
+    private final LinkSpeedDataContainer lsData;
+    private final int[] recordedTimes;
+    /** fixed[i][t] is true if link i has a recording at the time with position t */
+    private final boolean[][] fixed;
+    private double[][] ratios;
+
+    /** @param neighborIndex of the link graph, e.g., of the {@link AdjacencyNeighborKernel}, for
+     * the links of @param linkIndex */
+    public LinkSpeedDataDiffusion(LinkIndex linkIndex, NeighborIndex neighborIndex, LinkSpeedDataContainer lsData, //
+            int maxPasses, double tolerance) {
+        GlobalAssert.that(linkIndex.size() == neighborIndex.size());
+        GlobalAssert.that(0 < maxPasses);
+        this.linkIndex = linkIndex;
+        this.neighborIndex = neighborIndex;
+        this.lsData = lsData;
+        recordedTimes = lsData.getRecordedTimes().stream().mapToInt(Integer::intValue).sorted().toArray();
+        fixed = new boolean[linkIndex.size()][recordedTimes.length];
+        ratios = new double[linkIndex.size()][recordedTimes.length];
+        initialize();
+        diffuse(maxPasses, tolerance);
+        store();
+    }
+
+    private void initialize() {
+        for (int i = 0; i < linkIndex.size(); ++i) {
+            Link link = linkIndex.link(i);
+            Arrays.fill(ratios[i], Double.NaN);
+            LinkSpeedTimeSeries timeSeries = lsData.get(link);
+            if (Objects.nonNull(timeSeries))
+                for (int t = 0; t < recordedTimes.length; ++t)
+                    if (timeSeries.getRecordedTimes().contains(recordedTimes[t])) {
+                        ratios[i][t] = timeSeries.getSpeedsAt(recordedTimes[t]) / link.getFreespeed();
+                        fixed[i][t] = true;
+                    }
+        }
+    }
+
+    private void diffuse(int maxPasses, double tolerance) {
+        double[][] next = new double[linkIndex.size()][recordedTimes.length];
+        int pass = 0;
+        double change = Double.POSITIVE_INFINITY;
+        while (pass < maxPasses && tolerance <= change) {
+            ++pass;
+            double[][] current = ratios;
+            double[][] updated = next;
+            change = IntStream.range(0, linkIndex.size()).parallel().mapToDouble(i -> update(i, current, updated[i])).max().orElse(0);
+            ratios = updated;
+            next = current;
+        }
+        System.out.println("Diffusion passes: " + pass + ", largest change: " + change);
+    }
+
+    /** writes the new ratios of link @param i computed from @param current to @param next
+     * @return largest change, infinite if a ratio is reached for the first time */
+    private double update(int i, double[][] current, double[] next) {
+        double change = 0;
+        for (int t = 0; t < recordedTimes.length; ++t) {
+            if (fixed[i][t]) {
+                next[t] = current[i][t];
+                continue;
+            }
+            double sum = 0;
+            int count = 0;
+            for (int position = neighborIndex.start(i); position < neighborIndex.end(i); ++position) {
+                double ratio = current[neighborIndex.neighbor(position)][t];
+                if (!Double.isNaN(ratio)) {
+                    sum += ratio;
+                    ++count;
+                }
+            }
+            next[t] = 0 < count ? sum / count : Double.NaN;
+            if (!Double.isNaN(next[t]))
+                change = Math.max(change, Double.isNaN(current[i][t]) //
+                        ? Double.POSITIVE_INFINITY //
+                        : Math.abs(next[t] - current[i][t]));
+        }
+        return change;
+    }
+
+    private void store() {
+        int completed = 0;
+        int unreached = 0;
+        for (int i = 0; i < linkIndex.size(); ++i) {
+            Link link = linkIndex.link(i);
+            boolean added = false;
+            for (int t = 0; t < recordedTimes.length; ++t)
+                if (!fixed[i][t]) {
+                    if (Double.isNaN(ratios[i][t]))
+                        continue;
+                    lsData.addData(link, recordedTimes[t], ratios[i][t] * link.getFreespeed());
+                    added = true;
+                }
+            if (added)
+                ++completed;
+            else if (Objects.isNull(lsData.get(link)))
+                ++unreached;
+        }
+        System.out.println("Links completed by diffusion:  " + completed);
+        System.out.println("Links not reached:             " + unreached);
+    }
+}
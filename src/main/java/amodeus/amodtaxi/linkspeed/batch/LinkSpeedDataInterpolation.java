@@ -1,17 +1,18 @@
 /* amodeus - Copyright (c) 2018, ETH Zurich, Institute for Dynamic Systems and Control */
 package amodeus.amodtaxi.linkspeed.batch;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Objects;
-import java.util.Set;
+import java.util.stream.IntStream;
 
 import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
 import amodeus.amodeus.linkspeed.LinkSpeedTimeSeries;
+import amodeus.amodeus.util.math.GlobalAssert;
 import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
 
+import amodeus.amodtaxi.linkspeed.LinkIndex;
 import amodeus.amodtaxi.linkspeed.NeighborKernel;
-import ch.ethz.idsc.tensor.Scalar;
 
 /** This class is used to complete modified link speeds in a network at a certain time
  * when no recording was made at that time. The principal idea is that a kernel
@@ -26,65 +27,79 @@ public class LinkSpeedDataInterpolation {
         new LinkSpeedDataInterpolation(network, filterKernel, lsData);
     }
 
-    private final NeighborKernel kernel;
-    private final Network network;
+    private final LinkIndex linkIndex;
+    private final NeighborIndex neighborIndex;
     private final LinkSpeedDataContainer lsData;
 
+    /** the neighbors of all links are computed once with the @param filterKernel, restricted
+     * to the links with recordings in @param lsData */
     public LinkSpeedDataInterpolation(Network network, NeighborKernel filterKernel, //
             LinkSpeedDataContainer lsData) {
-        this.network = network;
-        this.kernel = filterKernel;
+        this.linkIndex = new LinkIndex(network);
         this.lsData = lsData;
+        long tStart = System.currentTimeMillis();
+        this.neighborIndex = NeighborIndex.of(linkIndex, filterKernel, j -> Objects.nonNull(lsData.get(linkIndex.link(j))));
+        System.out.println("Neighbor index: " + (System.currentTimeMillis() - tStart) + " [ms]");
         completeSpeeds();
     }
 
-    private void completeSpeeds() {
-        HashSet<Link> interpolatedLinks = new HashSet<>();
+    /** @param neighborIndex precomputed for the links of @param linkIndex, e.g., read from disk
+     * with {@link NeighborIndex#of(LinkIndex, ProximityNeighborKernel, java.io.File)} */
+    public LinkSpeedDataInterpolation(LinkIndex linkIndex, NeighborIndex neighborIndex, LinkSpeedDataContainer lsData) {
+        GlobalAssert.that(linkIndex.size() == neighborIndex.size());
+        this.linkIndex = linkIndex;
+        this.neighborIndex = neighborIndex;
+        this.lsData = lsData;
+        completeSpeeds();
+    }
 
+    private void completeSpeeds() {
         /** identify all times for which the {@link LinkSpeedDataContainer} contains recordings */
-        Set<Integer> recordedTimes = lsData.getRecordedTimes();
-
-        /** for every link in the network, complete recordings based on local average
-         * if not present. */
-        int completed = 0;
-        for (Link link : network.getLinks().values()) {
-
-            ++completed;
-            if (completed % 10000 == 0)
-                System.out.println(completed + " / " + network.getLinks().size());
-            Objects.requireNonNull(link);
+        int[] recordedTimes = lsData.getRecordedTimes().stream().mapToInt(Integer::intValue).sorted().toArray();
 
-            // /** same blocking for all links */
-            // if (!lsData.getLinkSet().containsKey(db.getLinkIndex(link))) {
-            // for (Integer time : recordedTimes) {
-            // lsData.addData(link, time, 0.0001);
-            // }
-            // }
-
-            /** some recordings exist for link */
+        /** speed ratios of the recordings, null for links without recordings, NaN for times without recording */
+        double[][] ratios = new double[linkIndex.size()][];
+        for (int i = 0; i < linkIndex.size(); ++i) {
+            Link link = linkIndex.link(i);
             LinkSpeedTimeSeries timeSeries = lsData.get(link);
             if (Objects.nonNull(timeSeries)) {
-                for (Integer time : recordedTimes)
-                    if (!timeSeries.getRecordedTimes().contains(time)) { // recordings exist for link but not for time
-                        System.out.println("Are we ever here?... ");
-                        System.exit(1); // TODO is this still needed?
-                        Scalar speed = MeanLinkSpeed.ofNeighbors(kernel.getNeighbors(link), time, link, lsData);
-                        if (Objects.nonNull(speed)) {
-                            lsData.addData(link, time, speed.number().doubleValue());
-                            interpolatedLinks.add(link);
+                ratios[i] = new double[recordedTimes.length];
+                for (int t = 0; t < recordedTimes.length; ++t)
+                    ratios[i][t] = timeSeries.getRecordedTimes().contains(recordedTimes[t]) //
+                            ? timeSeries.getSpeedsAt(recordedTimes[t]) / link.getFreespeed() //
+                            : Double.NaN;
+            }
+        }
+
+        /** for every link in the network, complete recordings based on the average ratio of
+         * the recorded neighbors if not present, the links are processed in parallel and
+         * only recordings are used, i.e., the result does not depend on the order */
+        double[][] completed = new double[linkIndex.size()][];
+        IntStream.range(0, linkIndex.size()).parallel().forEach(i -> {
+            double[] speeds = null;
+            for (int t = 0; t < recordedTimes.length; ++t)
+                if (Objects.isNull(ratios[i]) || Double.isNaN(ratios[i][t])) {
+                    double ratio = MeanLinkSpeed.ratioOfNeighbors(neighborIndex, i, t, ratios);
+                    if (!Double.isNaN(ratio)) {
+                        if (Objects.isNull(speeds)) {
+                            speeds = new double[recordedTimes.length];
+                            Arrays.fill(speeds, Double.NaN);
                         }
-                    }
-            } else
-                /** no recordings exist for link */
-                for (Integer time : recordedTimes) {
-                    Scalar speed = MeanLinkSpeed.ofNeighbors(kernel.getNeighbors(link), time, link, lsData);
-                    if (Objects.nonNull(speed)) {
-                        lsData.addData(link, time, speed.number().doubleValue());
-                        interpolatedLinks.add(link);
+                        speeds[t] = ratio * linkIndex.link(i).getFreespeed();
                     }
                 }
-        }
+            completed[i] = speeds;
+        });
+
+        int interpolatedLinks = 0;
+        for (int i = 0; i < linkIndex.size(); ++i)
+            if (Objects.nonNull(completed[i])) {
+                ++interpolatedLinks;
+                for (int t = 0; t < recordedTimes.length; ++t)
+                    if (!Double.isNaN(completed[i][t]))
+                        lsData.addData(linkIndex.link(i), recordedTimes[t], completed[i][t]);
+            }
         System.err.println("Total number of unsuccessful link speed estimations: " //
-                + interpolatedLinks.size() + "(" + interpolatedLinks.size() / ((double) network.getLinks().size()) + ")");
+                + interpolatedLinks + "(" + interpolatedLinks / ((double) linkIndex.size()) + ")");
     }
 }
@@ -2,7 +2,7 @@
 package amodeus.amodtaxi.linkspeed.batch;
 
 import java.util.Collection;
-import java.util.SortedMap;
+import java.util.Objects;
 
 import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
 import amodeus.amodeus.linkspeed.LinkSpeedTimeSeries;
@@ -25,29 +25,13 @@ import ch.ethz.idsc.tensor.red.Mean;
         Tensor changes = Tensors.empty();
         for (Link neighbor : neighbors) {
 
-            /** retrieve the link speed estimate of the neighbor */
-            SortedMap<Integer, LinkSpeedTimeSeries> neighborMap = lsData.getLinkMap();
-            LinkSpeedTimeSeries series = neighborMap.get(Integer.parseInt(neighbor.getId().toString()));
+            /** retrieve the link speed estimate of the neighbor, if any was recorded at the time */
+            LinkSpeedTimeSeries series = lsData.get(neighbor);
             GlobalAssert.that(time >= 0);
-            try {
-                // Tensor speeds = series.getSpeedsAt(time);
-                Scalar mean = RealScalar.of(series.getSpeedsAt(time));// (Scalar) Mean.of(speeds);
-
+            if (Objects.nonNull(series) && series.getRecordedTimes().contains(time)) {
+                Scalar mean = RealScalar.of(series.getSpeedsAt(time));
                 Scalar freeFlow = RealScalar.of(neighbor.getFreespeed());
-                Scalar change = mean.divide(freeFlow);
-
-                // System.out.println("speeds: " + speeds);
-                // System.out.println("mean: " + mean);
-                // System.out.println("freeFlow: " + freeFlow);
-                // System.out.println("change: " + change);
-                // Thread.sleep(10);
-
-                changes.append(change);
-            } catch (Exception exception) {
-                // TODO this catch is necessary because the class LinkSpeedTimeSeries
-                // is not able to say if any recordings were made without creating an exception,
-                // fix eventually...
-                // --
+                changes.append(mean.divide(freeFlow));
             }
         }
 
@@ -61,4 +45,20 @@ import ch.ethz.idsc.tensor.red.Mean;
         // System.out.println("===");
         return RealScalar.of(link.getFreespeed()).multiply(meanReduction);
     }
+
+    /** @return mean of the speed ratios @param ratios at time position @param time of the neighbors of
+     *         the link with @param index in @param neighborIndex, where ratios[j] is null if link j has no
+     *         recordings and NaN at times without recording, NaN if no neighbor has a recording */
+    public static double ratioOfNeighbors(NeighborIndex neighborIndex, int index, int time, double[][] ratios) {
+        double sum = 0;
+        int count = 0;
+        for (int position = neighborIndex.start(index); position < neighborIndex.end(index); ++position) {
+            double[] neighborRatios = ratios[neighborIndex.neighbor(position)];
+            if (Objects.nonNull(neighborRatios) && !Double.isNaN(neighborRatios[time])) {
+                sum += neighborRatios[time];
+                ++count;
+            }
+        }
+        return 0 < count ? sum / count : Double.NaN;
+    }
 }
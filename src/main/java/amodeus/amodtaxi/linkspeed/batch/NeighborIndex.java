@@ -0,0 +1,146 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+import org.matsim.api.core.v01.network.Link;
+
+import amodeus.amodtaxi.linkspeed.LinkIndex;
+import amodeus.amodtaxi.linkspeed.NeighborKernel;
+
+/** Neighbors of all links of a {@link LinkIndex} as found by a {@link NeighborKernel}, computed
+ * once and stored compactly: the neighbors of link i are the link indices at the positions
+ * offsets[i], ..., offsets[i + 1] - 1. The index of a {@link ProximityNeighborKernel} can be
+ * persisted, the file is keyed by a hash of the network and the radius. */
+public final class NeighborIndex {
+    private static final int VERSION = 1;
+
+    /** @return index of the neighbors of all links in @param linkIndex according to @param kernel,
+     *         the kernel is queried in parallel */
+    public static NeighborIndex of(LinkIndex linkIndex, NeighborKernel kernel) {
+        return of(linkIndex, kernel, i -> true);
+    }
+
+    /** @return index of the neighbors according to @param kernel restricted to the links for which
+     *         @param candidates is true, smaller than the full index if only few links qualify */
+    public static NeighborIndex of(LinkIndex linkIndex, NeighborKernel kernel, IntPredicate candidates) {
+        int[][] neighbors = new int[linkIndex.size()][];
+        IntStream.range(0, linkIndex.size()).parallel().forEach(i -> neighbors[i] = kernel.getNeighbors(linkIndex.link(i)).stream() //
+                .mapToInt(linkIndex::indexOf).filter(candidates).toArray());
+        int[] offsets = new int[neighbors.length + 1];
+        for (int i = 0; i < neighbors.length; ++i)
+            offsets[i + 1] = offsets[i] + neighbors[i].length;
+        int[] flat = new int[offsets[neighbors.length]];
+        for (int i = 0; i < neighbors.length; ++i)
+            System.arraycopy(neighbors[i], 0, flat, offsets[i], neighbors[i].length);
+        return new NeighborIndex(networkHash(linkIndex), offsets, flat);
+    }
+
+    /** @return index of @param kernel for @param linkIndex read from @param directory if it was
+     *         computed before for the same network and radius, otherwise the index is computed
+     *         and written to @param directory */
+    public static NeighborIndex of(LinkIndex linkIndex, ProximityNeighborKernel kernel, File directory) throws IOException {
+        long networkHash = networkHash(linkIndex);
+        File file = new File(directory, //
+                String.format("neighbors_%016x_%s.bin", networkHash, kernel.radius().number().toString()));
+        if (file.isFile()) {
+            NeighborIndex neighborIndex = read(file);
+            if (neighborIndex.networkHash == networkHash && neighborIndex.size() == linkIndex.size()) {
+                System.out.println("Loaded neighbor index from " + file.getAbsolutePath());
+                return neighborIndex;
+            }
+        }
+        NeighborIndex neighborIndex = of(linkIndex, kernel);
+        neighborIndex.write(file);
+        return neighborIndex;
+    }
+
+    /** @return hash of the ids and coordinates of the links in the order of @param linkIndex */
+    /* package */ static long networkHash(LinkIndex linkIndex) {
+        long hash = 1125899906842597L;
+        for (int i = 0; i < linkIndex.size(); ++i) {
+            Link link = linkIndex.link(i);
+            hash = 31 * hash + link.getId().toString().hashCode();
+            hash = 31 * hash + Double.hashCode(link.getCoord().getX());
+            hash = 31 * hash + Double.hashCode(link.getCoord().getY());
+        }
+        return hash;
+    }
+
+    private static NeighborIndex read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != VERSION)
+                throw new IOException("unknown neighbor index version");
+            long networkHash = in.readLong();
+            int[] offsets = new int[in.readInt()];
+            for (int i = 0; i < offsets.length; ++i)
+                offsets[i] = in.readInt();
+            int[] neighbors = new int[in.readInt()];
+            for (int i = 0; i < neighbors.length; ++i)
+                neighbors[i] = in.readInt();
+            return new NeighborIndex(networkHash, offsets, neighbors);
+        }
+    }
+
+    // ---
+    private final long networkHash;
+    private final int[] offsets;
+    private final int[] neighbors;
+
+    private NeighborIndex(long networkHash, int[] offsets, int[] neighbors) {
+        GlobalAssert.that(0 < offsets.length && offsets[offsets.length - 1] == neighbors.length);
+        this.networkHash = networkHash;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+    }
+
+    /** @return number of links */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /** @return position of the first neighbor of link with @param index */
+    public int start(int index) {
+        return offsets[index];
+    }
+
+    /** @return position after the last neighbor of link with @param index */
+    public int end(int index) {
+        return offsets[index + 1];
+    }
+
+    /** @return link index of the neighbor at @param position */
+    public int neighbor(int position) {
+        return neighbors[position];
+    }
+
+    /** writes the index to @param file, the file is replaced only once it is complete */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(VERSION);
+            out.writeLong(networkHash);
+            out.writeInt(offsets.length);
+            for (int offset : offsets)
+                out.writeInt(offset);
+            out.writeInt(neighbors.length);
+            for (int neighbor : neighbors)
+                out.writeInt(neighbor);
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -1,35 +1,54 @@
 /* amodeus - Copyright (c) 2018, ETH Zurich, Institute for Dynamic Systems and Control */
 package amodeus.amodtaxi.linkspeed.batch;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import amodeus.amodeus.net.MatsimAmodeusDatabase;
 import amodeus.amodeus.taxitrip.ShortestDurationCalculator;
 import amodeus.amodeus.taxitrip.TaxiTrip;
 import amodeus.amodeus.util.math.SI;
-import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.router.util.LeastCostPathCalculator.Path;
 
+import amodeus.amodtaxi.linkspeed.LinkIndex;
 import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Scalars;
 import ch.ethz.idsc.tensor.qty.Quantity;
 
 /* package */ class PathHandlerTimeInv {
+    /** @return paths of all @param records in the same order, computed in parallel with
+     *         one {@link ShortestDurationCalculator} per thread */
+    public static List<PathHandlerTimeInv> of(Collection<TaxiTrip> records, Network network, //
+            MatsimAmodeusDatabase db, LinkIndex linkIndex) {
+        ThreadLocal<ShortestDurationCalculator> calcs = ThreadLocal.withInitial(() -> new ShortestDurationCalculator(network, db));
+        return records.parallelStream() //
+                .map(tt -> new PathHandlerTimeInv(tt, calcs.get(), linkIndex)) //
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    // ---
+    public final LocalDateTime pickupTimeDate;
     public final Scalar duration;
     public final Scalar freeflowDuation;
-    public final List<Link> travelledLinks;
+    /** indices of the links of the fastest path in the {@link LinkIndex} */
+    public final int[] travelledLinks;
     private final boolean isValid;
 
-    public PathHandlerTimeInv(TaxiTrip taxiTrip, ShortestDurationCalculator calc) {
+    public PathHandlerTimeInv(TaxiTrip taxiTrip, ShortestDurationCalculator calc, LinkIndex linkIndex) {
         /** compute fastest path */
         Path fastest = calc.computePath(taxiTrip);
 
         /** extract data from {@link TaxiTrip} */
+        this.pickupTimeDate = taxiTrip.pickupTimeDate;
         this.duration = taxiTrip.driveTime;
         /** extract data from free flow shortest path */
         this.freeflowDuation = Quantity.of(fastest.travelTime, SI.SECOND);
 
-        travelledLinks = new ArrayList<>(fastest.links);
+        travelledLinks = fastest.links.stream().mapToInt(linkIndex::indexOf).toArray();
 
         isValid = Scalars.lessEquals(freeflowDuation, duration);
     }
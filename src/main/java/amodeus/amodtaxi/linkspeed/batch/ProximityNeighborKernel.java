@@ -34,4 +34,9 @@ public class ProximityNeighborKernel implements NeighborKernel {
         double y1 = link.getCoord().getY();
         return quadTree.getDisk(x1, y1, radius.number().doubleValue());
     }
+
+    /** @return radius in [m] in which links are neighbors */
+    public Scalar radius() {
+        return radius;
+    }
 }
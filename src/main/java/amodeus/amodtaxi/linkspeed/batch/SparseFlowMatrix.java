@@ -0,0 +1,181 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+
+import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.alg.Array;
+import ch.ethz.idsc.tensor.alg.MatrixQ;
+import ch.ethz.idsc.tensor.alg.VectorQ;
+
+/** Flow matrix of dimension trips x links in compressed sparse row format. Row i encodes
+ * the links passed by trip i, the nonzero entries of row i are stored at the positions
+ * rowPtr[i], ..., rowPtr[i + 1] - 1 of the arrays of column indices and values, with
+ * increasing column indices. The memory is proportional to the total length of all paths
+ * instead of trips x links for a dense {@link Tensor}. */
+public final class SparseFlowMatrix {
+
+    /** @return flow matrix with @param numCols columns and value 1 at the column indices
+     *         of every row in @param rows, duplicate indices within a row are merged */
+    public static SparseFlowMatrix ofRows(int numCols, List<int[]> rows) {
+        double[] weights = new double[rows.size()];
+        Arrays.fill(weights, 1.0);
+        return ofRows(numCols, rows, weights);
+    }
+
+    /** @return flow matrix with @param numCols columns and value weights[i] at the column indices
+     *         of row i in @param rows, duplicate indices within a row are merged */
+    public static SparseFlowMatrix ofRows(int numCols, List<int[]> rows, double[] weights) {
+        GlobalAssert.that(rows.size() == weights.length);
+        int[] rowPtr = new int[rows.size() + 1];
+        int[][] sorted = new int[rows.size()][];
+        for (int i = 0; i < rows.size(); ++i) {
+            sorted[i] = IntStream.of(rows.get(i)).sorted().distinct().toArray();
+            rowPtr[i + 1] = rowPtr[i] + sorted[i].length;
+        }
+        int[] colIdx = new int[rowPtr[rows.size()]];
+        for (int i = 0; i < sorted.length; ++i)
+            System.arraycopy(sorted[i], 0, colIdx, rowPtr[i], sorted[i].length);
+        double[] values = new double[colIdx.length];
+        for (int i = 0; i < sorted.length; ++i)
+            Arrays.fill(values, rowPtr[i], rowPtr[i + 1], weights[i]);
+        return new SparseFlowMatrix(numCols, rowPtr, colIdx, values);
+    }
+
+    /** @return sparse representation of the dense @param matrix */
+    public static SparseFlowMatrix of(Tensor matrix) {
+        GlobalAssert.that(MatrixQ.of(matrix));
+        int numRows = matrix.length();
+        int numCols = matrix.get(0).length();
+        int[] rowPtr = new int[numRows + 1];
+        IntStream.Builder colIdx = IntStream.builder();
+        DoubleStream.Builder values = DoubleStream.builder();
+        for (int i = 0; i < numRows; ++i) {
+            Tensor row = matrix.get(i);
+            int count = 0;
+            for (int j = 0; j < numCols; ++j) {
+                double value = row.Get(j).number().doubleValue();
+                if (value != 0) {
+                    colIdx.add(j);
+                    values.add(value);
+                    ++count;
+                }
+            }
+            rowPtr[i + 1] = rowPtr[i] + count;
+        }
+        return new SparseFlowMatrix(numCols, rowPtr, colIdx.build().toArray(), values.build().toArray());
+    }
+
+    // ---
+    private final int numCols;
+    private final int[] rowPtr;
+    private final int[] colIdx;
+    private final double[] values;
+
+    /** @param numCols number of columns
+     * @param rowPtr of length rows + 1, start of every row in @param colIdx and @param values */
+    public SparseFlowMatrix(int numCols, int[] rowPtr, int[] colIdx, double[] values) {
+        GlobalAssert.that(0 < rowPtr.length && rowPtr[0] == 0);
+        GlobalAssert.that(rowPtr[rowPtr.length - 1] == colIdx.length);
+        GlobalAssert.that(colIdx.length == values.length);
+        GlobalAssert.that(IntStream.of(colIdx).allMatch(j -> 0 <= j && j < numCols));
+        this.numCols = numCols;
+        this.rowPtr = rowPtr;
+        this.colIdx = colIdx;
+        this.values = values;
+    }
+
+    /** @return number of rows, i.e., trips */
+    public int rows() {
+        return rowPtr.length - 1;
+    }
+
+    /** @return number of columns, i.e., links */
+    public int cols() {
+        return numCols;
+    }
+
+    /** @return number of stored entries */
+    public int nonZeros() {
+        return colIdx.length;
+    }
+
+    /** @return position of the first entry of @param row */
+    public int rowStart(int row) {
+        return rowPtr[row];
+    }
+
+    /** @return position after the last entry of @param row */
+    public int rowEnd(int row) {
+        return rowPtr[row + 1];
+    }
+
+    /** @return column index of the entry at @param position */
+    public int column(int position) {
+        return colIdx[position];
+    }
+
+    /** @return value of the entry at @param position */
+    public double value(int position) {
+        return values[position];
+    }
+
+    /** @return product of this matrix with the vector @param x of length cols() */
+    public double[] dot(double[] x) {
+        GlobalAssert.that(x.length == numCols);
+        double[] result = new double[rows()];
+        for (int i = 0; i < result.length; ++i) {
+            double sum = 0;
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k)
+                sum += values[k] * x[colIdx[k]];
+            result[i] = sum;
+        }
+        return result;
+    }
+
+    /** @return transposed matrix, also in compressed sparse row format */
+    public SparseFlowMatrix transpose() {
+        int[] tRowPtr = new int[numCols + 1];
+        for (int j : colIdx)
+            ++tRowPtr[j + 1];
+        for (int j = 0; j < numCols; ++j)
+            tRowPtr[j + 1] += tRowPtr[j];
+        int[] next = Arrays.copyOf(tRowPtr, numCols);
+        int[] tColIdx = new int[colIdx.length];
+        double[] tValues = new double[values.length];
+        for (int i = 0; i < rows(); ++i)
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k) {
+                int position = next[colIdx[k]]++;
+                tColIdx[position] = i;
+                tValues[position] = values[k];
+            }
+        return new SparseFlowMatrix(rows(), tRowPtr, tColIdx, tValues);
+    }
+
+    /** @return product of this matrix with @param x, which is either a vector or a matrix with a
+     *         single column, the result is of the same form */
+    public Tensor dot(Tensor x) {
+        double[] product = dot(x.flatten(-1).map(Scalar.class::cast).mapToDouble(s -> s.number().doubleValue()).toArray());
+        Tensor result = Tensors.vectorDouble(product);
+        return VectorQ.of(x) //
+                ? result //
+                : Tensor.of(result.stream().map(Tensors::of));
+    }
+
+    /** @return dense matrix of dimension rows() x cols(), only for small instances */
+    public Tensor toTensor() {
+        Tensor matrix = Array.zeros(rows(), numCols);
+        for (int i = 0; i < rows(); ++i)
+            for (int k = rowPtr[i]; k < rowPtr[i + 1]; ++k)
+                matrix.set(RealScalar.of(values[k]), i, colIdx[k]);
+        return matrix;
+    }
+}
@@ -12,4 +12,22 @@ public interface TrafficDelayEstimate {
      *         on which of the n link/time segments the trip passes. */
     Tensor compute(Tensor flowMatrix, Tensor deviation);
 
+    /** @return delays as in {@link #compute(Tensor, Tensor)} for the @param flowMatrix in sparse
+     *         format, implementations should override the default which expands the matrix */
+    default Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation) {
+        return compute(flowMatrix.toTensor(), deviation);
+    }
+
+    /** @return delays as in {@link #compute(SparseFlowMatrix, Tensor)}, where implementations may start
+     *         from the @param initialDelays, a vector with one delay per column of the @param flowMatrix,
+     *         e.g., the solution of a previous day. The default ignores the initial delays. */
+    default Tensor compute(SparseFlowMatrix flowMatrix, Tensor deviation, Tensor initialDelays) {
+        return compute(flowMatrix, deviation);
+    }
+
+    /** releases resources which the estimate holds for the calling thread, called by worker threads
+     * before they terminate. The default holds no such resources. */
+    default void releaseThread() {
+        // ---
+    }
 }
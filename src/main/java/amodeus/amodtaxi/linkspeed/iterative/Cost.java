@@ -1,14 +1,12 @@
 /* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
 package amodeus.amodtaxi.linkspeed.iterative;
 
-import java.util.List;
 import java.util.Map;
 
 import amodeus.amodeus.taxitrip.TaxiTrip;
 import ch.ethz.idsc.tensor.RealScalar;
 import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Tensor;
-import ch.ethz.idsc.tensor.red.Max;
 import ch.ethz.idsc.tensor.red.Mean;
 
 /** Cost must be positive */
@@ -22,7 +20,13 @@ import ch.ethz.idsc.tensor.red.Mean;
         return  ((Scalar) Mean.of(diffAll)).subtract(RealScalar.ONE).abs(); // removed assert, because abs() call
     }
 
-    public static Scalar max(List<Scalar> ratios) {
-        return ratios.stream().map(s -> s.subtract(RealScalar.ONE).abs()).reduce(Max::of).get(); // removed assert because of abs() call
+    /** @return max |ratio - 1| over the ratios in the @param window */
+    public static Scalar max(RatioWindow window) {
+        return RealScalar.of(window.maxDeviation());
+    }
+
+    /** @return |mean - 1| of the ratios in the @param window */
+    public static Scalar mean(RatioWindow window) {
+        return RealScalar.of(Math.abs(window.mean() - 1));
     }
 }
@@ -0,0 +1,166 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
+import amodeus.amodeus.util.math.GlobalAssert;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+import amodeus.amodtaxi.linkspeed.LinkIndex;
+
+/** Link speeds of the iterative estimation stored in one flat array indexed by
+ * dense link index x time bin. Links which were never modified are not initialized
+ * and read as their free speed. The content is transferred to a {@link LinkSpeedDataContainer}
+ * only on export.
+ * 
+ * Every effective change of a link increments the version of the speeds. The newest changes
+ * are logged with their direction, which allows to decide cheaply whether a shortest path
+ * computed under an older version is still a shortest path, see {@link #keepsShortestPath(long, int[])}. */
+/* package */ class DenseLinkSpeeds implements TravelTime {
+    /** last time for which speeds are recorded */
+    private static final int MAX_TIME = 108000;
+    /** number of logged changes, paths older than the log are considered outdated */
+    private static final int LOG_CAPACITY = 1 << 16;
+
+    private final LinkIndex linkIndex;
+    private final int dt;
+    private final int numBins;
+    /** speeds[linkIndex * numBins + bin] */
+    private final double[] speeds;
+    private final boolean[] modified;
+    /** number of effective changes so far */
+    private long version = 0;
+    /** ring buffer of the last changes, +(index + 1) for a faster, -(index + 1) for a slower link */
+    private final int[] changeLog = new int[LOG_CAPACITY];
+
+    public DenseLinkSpeeds(Network network, int dt) {
+        GlobalAssert.that(0 < dt);
+        this.linkIndex = new LinkIndex(network);
+        this.dt = dt;
+        numBins = MAX_TIME / dt + 1;
+        speeds = new double[linkIndex.size() * numBins];
+        modified = new boolean[linkIndex.size()];
+    }
+
+    /** @return index of @param link */
+    public int indexOf(Link link) {
+        return linkIndex.indexOf(link);
+    }
+
+    /** @return number of effective changes of the link speeds so far */
+    public long version() {
+        return version;
+    }
+
+    /** A shortest path remains a shortest path if since its computation only links off the path
+     * got slower. Any change of a link on the path invalidates it: with time dependent speeds, a
+     * faster link moves the arrival at the following nodes to other time bins, in which a different
+     * branch may be shorter although no link off the path got faster. A slower link off the path
+     * does not change the travel time of the path and, for FIFO travel times as assumed by the
+     * search itself, does not shorten any other path.
+     * 
+     * @param version under which the path was computed
+     * @param pathLinks sorted indices of the links of the path
+     * @return true if no change after @param version can have altered the shortest path */
+    public boolean keepsShortestPath(long version, int[] pathLinks) {
+        if (LOG_CAPACITY < this.version - version)
+            return false;
+        for (long v = version; v < this.version; ++v) {
+            int change = changeLog[(int) (v % LOG_CAPACITY)];
+            if (0 < change || 0 <= Arrays.binarySearch(pathLinks, -change - 1))
+                return false;
+        }
+        return true;
+    }
+
+    /** @return speed of @param link at @param time, i.e., in the time bin containing the time */
+    public double getSpeed(Link link, double time) {
+        int index = linkIndex.indexOf(link);
+        return modified[index] //
+                ? speeds[index * numBins + bin(time)] //
+                : link.getFreespeed();
+    }
+
+    @Override // from TravelTime
+    public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+        return link.getLength() / getSpeed(link, time);
+    }
+
+    /** multiplies the speed of @param link in every time bin with @param factor, new speeds
+     * exceeding the free speed are only applied if @param allowIncrease is true */
+    public void scale(Link link, double factor, boolean allowIncrease) {
+        int index = linkIndex.indexOf(link);
+        double freeSpeed = link.getFreespeed();
+        int offset = index * numBins;
+        if (!modified[index]) {
+            Arrays.fill(speeds, offset, offset + numBins, freeSpeed);
+            modified[index] = true;
+        }
+        boolean changed = false;
+        for (int i = offset; i < offset + numBins; ++i) {
+            double newSpeed = speeds[i] * factor;
+            if (newSpeed <= freeSpeed || allowIncrease) {
+                changed |= newSpeed != speeds[i];
+                speeds[i] = newSpeed;
+            }
+        }
+        if (changed)
+            changeLog[(int) (version++ % LOG_CAPACITY)] = factor < 1 ? -(index + 1) : index + 1;
+    }
+
+    /** writes the speeds of all modified links to @param lsData */
+    public void exportTo(LinkSpeedDataContainer lsData) {
+        for (int index = 0; index < modified.length; ++index)
+            if (modified[index]) {
+                Link link = linkIndex.link(index);
+                for (int bin = 0; bin < numBins; ++bin)
+                    lsData.addData(link, bin * dt, speeds[index * numBins + bin]);
+            }
+    }
+
+    /** writes the speeds of all modified links identified by their link id to @param out */
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(dt);
+        out.writeInt(numBins);
+        int numModified = 0;
+        for (boolean isModified : modified)
+            if (isModified)
+                ++numModified;
+        out.writeInt(numModified);
+        for (int index = 0; index < modified.length; ++index)
+            if (modified[index]) {
+                out.writeUTF(linkIndex.link(index).getId().toString());
+                for (int bin = 0; bin < numBins; ++bin)
+                    out.writeDouble(speeds[index * numBins + bin]);
+            }
+    }
+
+    /** replaces the content with the speeds read from @param in as written by {@link #write(DataOutput)},
+     * all paths computed before are considered outdated */
+    public void read(DataInput in) throws IOException {
+        version += LOG_CAPACITY + 1;
+        if (in.readInt() != dt || in.readInt() != numBins)
+            throw new IOException("time bins of link speeds do not match");
+        Arrays.fill(modified, false);
+        int numModified = in.readInt();
+        for (int count = 0; count < numModified; ++count) {
+            int index = linkIndex.indexOf(Id.createLinkId(in.readUTF()));
+            modified[index] = true;
+            for (int bin = 0; bin < numBins; ++bin)
+                speeds[index * numBins + bin] = in.readDouble();
+        }
+    }
+
+    private int bin(double time) {
+        return Math.max(0, Math.min(numBins - 1, (int) (time / dt)));
+    }
+}
@@ -0,0 +1,87 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import ch.ethz.idsc.tensor.Tensors;
+
+/** Writes the diagnostics of the iterative estimation, i.e., the ratio map and the histogram
+ * of the recorded ratios, on a background thread. Frames are immutable snapshots, the queue of
+ * pending frames is bounded: if the writer falls behind, the oldest pending frame is dropped,
+ * so submitting a frame never blocks on I/O. */
+/* package */ class DiagnosticsWriter implements AutoCloseable {
+    private static final int CAPACITY = 2;
+
+    private static class Frame {
+        private final String label;
+        private final double[] tripRatios;
+        private final double[] windowRatios;
+
+        private Frame(String label, double[] tripRatios, double[] windowRatios) {
+            this.label = label;
+            this.tripRatios = tripRatios;
+            this.windowRatios = windowRatios;
+        }
+    }
+
+    private static final Frame END = new Frame(null, null, null);
+
+    // ---
+    private final BlockingQueue<Frame> frames = new ArrayBlockingQueue<>(CAPACITY);
+    private final File diffDir;
+    private final File plotDir;
+    private final Thread thread;
+    private int dropped = 0;
+
+    public DiagnosticsWriter(File processingDir) {
+        diffDir = new File(processingDir, "diff");
+        plotDir = new File(processingDir, "plot");
+        diffDir.mkdir();
+        plotDir.mkdir();
+        thread = new Thread(this::run, "link speed diagnostics");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** submits a frame with @param label, the arrays @param tripRatios and @param windowRatios
+     * must not be modified afterwards */
+    public void submit(String label, double[] tripRatios, double[] windowRatios) {
+        Frame frame = new Frame(label, tripRatios, windowRatios);
+        while (!frames.offer(frame))
+            if (frames.poll() != null)
+                ++dropped;
+    }
+
+    /** waits until all pending frames are written */
+    @Override
+    public void close() {
+        try {
+            frames.put(END);
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (0 < dropped)
+            System.out.println("Diagnostics frames dropped: " + dropped);
+    }
+
+    private void run() {
+        try {
+            Frame frame;
+            while ((frame = frames.take()) != END) {
+                /** a failed frame must not end the thread, otherwise close blocks on the full queue */
+                try {
+                    StaticHelper.exportRatios(diffDir, Tensors.vectorDouble(frame.tripRatios), frame.label);
+                    StaticHelper.plotRatioMap(plotDir, Tensors.vectorDouble(frame.windowRatios), frame.label);
+                } catch (RuntimeException runtimeException) {
+                    System.err.println("Diagnostics frame " + frame.label + " failed:");
+                    runtimeException.printStackTrace();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -24,7 +24,12 @@ public class DurationCompare {
     public final Scalar nwPathDurationRatio;
 
     public DurationCompare(TaxiTrip trip, ShortestDurationCalculator calc) {
-        path = calc.computePath(trip);
+        this(trip, calc.computePath(trip));
+    }
+
+    /** @param path of the @param trip, e.g., a cached path with updated travel time */
+    public DurationCompare(TaxiTrip trip, Path path) {
+        this.path = path;
         pathTime = Quantity.of(path.travelTime, SI.SECOND);
         pathDist = Quantity.of(path.links.stream().mapToDouble(Link::getLength).sum(), SI.METER);
         duration = trip.driveTime;
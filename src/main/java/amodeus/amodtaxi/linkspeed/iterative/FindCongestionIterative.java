@@ -2,33 +2,64 @@
 package amodeus.amodtaxi.linkspeed.iterative;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Random;
-import java.util.function.Function;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
 import amodeus.amodeus.net.MatsimAmodeusDatabase;
-import amodeus.amodeus.taxitrip.ShortestDurationCalculator;
 import amodeus.amodeus.taxitrip.TaxiTrip;
+import amodeus.amodeus.util.math.GlobalAssert;
+import org.matsim.api.core.v01.network.Link;
 import org.matsim.api.core.v01.network.Network;
-import org.matsim.core.router.util.LeastCostPathCalculator;
 
 import ch.ethz.idsc.tensor.RealScalar;
 import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Scalars;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.red.Mean;
 
 /* package */ class FindCongestionIterative {
+    /** name of the checkpoint file in the processing directory */
+    public static final String CHECKPOINT = "iterativeCheckpoint.bin.gz";
+    /** number of iterations between two checkpoints */
+    private static final int CHECKPOINT_INTERVAL = 10000;
+    /** default number of iterations between two diagnostics frames */
+    public static final int DIAGNOSTICS_INTERVAL = 50;
+    /** relative tolerance of path durations considered equal, the searches may sum up the
+     * link travel times of equally short paths with different rounding */
+    private static final double DURATION_TOLERANCE = 1e-9;
+
+    private final IterationState state;
     private final TripComparisonMaintainer tripMaintainer;
     private final RandomTripMaintainer randomTrips;
     private final File processingDir;
+    /** background writer of the diagnostics, null if disabled */
+    private final DiagnosticsWriter diagnostics;
+    private final int diagnosticsInterval;
+    private final LinkSpeedRouter router;
+    /** one router per thread for the batch-synchronous mode */
+    private final ThreadLocal<LinkSpeedRouter> routers;
+    private final SearchCounter searchCounter = new SearchCounter();
+    /** shortest paths shared by all routers */
+    private final PathCache pathCache;
     private Scalar lastCost;
 
     /** settings and data */
     private final Scalar tolerance;
-    private final Network network;
+    /** export target of the link speeds */
     private final LinkSpeedDataContainer lsData;
-    private final MatsimAmodeusDatabase db;
+    /** link speeds modified during the iterations */
+    private final DenseLinkSpeeds speeds;
     /** this is a value in (0,1] which determines the convergence
      * speed of the algorithm, a value close to 1 may lead to
      * loss of convergence, it is advised to chose slow. No changes
@@ -38,132 +69,265 @@ import ch.ethz.idsc.tensor.Scalars;
     private final Scalar epsilon2;
     private final int maxIter;
     private final Random random;
-    private final int dt;
+    /** number of trips routed concurrently per iteration step, 1 corresponds to the serial algorithm */
+    private final int batchSize;
 
+    /** runs the iterations starting from @param state, i.e., an initial {@link IterationState}
+     * or one read from a checkpoint
+     * 
+     * @param batchSize number of trips which are routed concurrently against the same
+     *            state of the link speeds before the rescale factors are merged into the
+     *            link speeds, for a given seed and batch size the result is reproducible
+     * @param diagnosticsInterval number of iterations between two frames of the ratio map and histogram
+     *            which are written in the background, 0 disables the diagnostics
+     * @param routing search algorithm for the shortest paths */
     public FindCongestionIterative(Network network, MatsimAmodeusDatabase db, File processingDir, //
-            LinkSpeedDataContainer lsData, List<TaxiTrip> allTrips, //
-            int maxIter, Scalar tol, Scalar epsilon1, Scalar epsilon2, Random random, int dt, //
-            Function<List<Scalar>, Scalar> costFunction, int checkHorizon) {
+            LinkSpeedDataContainer lsData, int maxIter, Scalar tol, Scalar epsilon1, Scalar epsilon2, //
+            int batchSize, int diagnosticsInterval, LinkSpeedRouting routing, IterationState state) {
+        GlobalAssert.that(0 < batchSize);
+        GlobalAssert.that(0 <= diagnosticsInterval);
         this.processingDir = processingDir;
-        this.network = network;
-        this.db = db;
         this.tolerance = Objects.requireNonNull(tol);
         this.lsData = lsData;
         this.epsilon1 = epsilon1;
         this.epsilon2 = epsilon2;
         this.maxIter = maxIter;
-        this.random = random;
-        this.dt = dt;
+        this.batchSize = batchSize;
+        this.diagnosticsInterval = diagnosticsInterval;
+        this.state = state;
+        this.random = state.random;
+        this.speeds = state.speeds;
+        this.randomTrips = state.randomTrips;
+        this.tripMaintainer = state.tripMaintainer;
 
-        /** export the initial distribution of ratios */
-        this.randomTrips = new RandomTripMaintainer(allTrips, checkHorizon, costFunction, random);
-        this.tripMaintainer = new TripComparisonMaintainer(randomTrips, network, db);
+        /** routing engine reading the live link speeds, built once for all iterations */
+        this.pathCache = new PathCache(speeds);
+        this.router = new LinkSpeedRouter(network, db, speeds, routing, searchCounter, pathCache);
+        this.routers = ThreadLocal.withInitial(() -> new LinkSpeedRouter(network, db, speeds, routing, searchCounter, pathCache));
+        if (routing != LinkSpeedRouting.DIJKSTRA)
+            compareToDijkstra(network, db, routing);
 
         /** export initial distribution */
-        File diff = new File(processingDir, "diff");
-        File plot = new File(processingDir, "plot");
-        diff.mkdir();
-        plot.mkdir();
-        StaticHelper.exportRatioMap(diff, tripMaintainer.getLookupMap(), "Initial");
-        StaticHelper.plotRatioMap(plot, randomTrips.getRatios(), "Initial");
+        diagnostics = 0 < diagnosticsInterval //
+                ? new DiagnosticsWriter(processingDir) //
+                : null;
+        if (state.iterationCount == 0)
+            submitDiagnostics("Initial");
+        else
+            System.out.println("Resuming after iteration: " + state.iterationCount);
 
         /** show initial score */
         System.out.println("Cost initial: " + randomTrips.getRatioCost());
 
-        runTripIterations();
+        try {
+            runTripIterations();
+        } finally {
+            if (Objects.nonNull(diagnostics))
+                diagnostics.close();
+        }
+        speeds.exportTo(lsData);
 
         System.out.println("Cost End: " + randomTrips.getRatioCost());
     }
 
     private void runTripIterations() {
-        int iterationCount = 0;
+        int iterationCount = state.iterationCount;
         lastCost = randomTrips.getRatioCost();
         System.out.println("Last cost before start: " + lastCost);
         System.out.println("Tolerance:              " + tolerance);
 
         while (Scalars.lessEquals(tolerance, lastCost) && iterationCount < maxIter) {
-            ++iterationCount;
-
-            /** taking random trip */
-            boolean isRandomTrip = random.nextDouble() <= epsilon2.number().doubleValue();
-            TaxiTrip trip = isRandomTrip //
-                    ? randomTrips.nextRandom() //
-                    : tripMaintainer.getWorst(); // take currently worst trip
-
-            /** create the shortest duration calculator using the linkSpeed data,
-             * must be done again to take into account newest updates */
-            DurationCompare compare = getPathDurationRatio(trip);
-            Scalar pathDurationratio = compare.nwPathDurationRatio;
-            Scalar ratioBefore = compare.nwPathDurationRatio;
-
-            /** if it is a random trip, record the ratio */
-            if (isRandomTrip)
-                randomTrips.addRecordedRatio(ratioBefore);
-
-            /** update cost based on random trips */
-            lastCost = randomTrips.getRatioCost();
-
-            /** rescale factor such that epsilon in [0,1] maps to [f,1] */
-            Scalar rescaleFactor = RealScalar.ONE.subtract( //
-                    (RealScalar.ONE.subtract(pathDurationratio)).multiply(epsilon1));
-
-            /** rescale links to approach desired link speed */
-            ApplyScaling.to(lsData, trip, compare.path, rescaleFactor, dt);
-
-            compare = getPathDurationRatio(trip);
-            pathDurationratio = compare.nwPathDurationRatio;
-
-            if (!StaticHelper.ratioDidImprove(ratioBefore, pathDurationratio)) {
-                // if(true){
-                System.err.println("trip:        " + trip.localId);
-                System.err.println("ratioBefore: " + ratioBefore);
-                System.err.println("ratioAfter:  " + pathDurationratio);
-                System.err.println("Now at trip " + trip.localId);
-                System.err.println("Now at trip " + trip.pickupLoc);
-                System.err.println("Now at trip " + trip.dropoffLoc);
-                System.err.println("compare.path");
-                compare.path.links.forEach(l -> System.err.println(l.getId().toString()));
-                System.err.println("compare.pathDist " + compare.pathDist);
-                System.err.println("compare.duration " + compare.duration);
-                System.err.println("compare.pathTime " + compare.pathTime);
-            }
-
-            tripMaintainer.update(trip, pathDurationratio);
+            int iterationBefore = iterationCount;
+            iterationCount += batchSize == 1 //
+                    ? iterateSingle() //
+                    : iterateBatch();
 
             /** assess every 20 trips if ok */
-            if (iterationCount % 10 == 0) {
+            if (crossed(iterationBefore, iterationCount, 10)) {
                 // costMid = costFunction.apply(tripMaintainer.getLookupMap());
                 System.out.println("iterationCount:       " + iterationCount);
                 // System.out.println("cost: " + costMid);
                 System.out.println("worst cost: " + tripMaintainer.getWorstCost());
                 System.out.println("worst trip: " + tripMaintainer.getWorst().localId);
                 System.out.println("cost:       " + lastCost);
+                System.out.println("link evaluations per search: " + searchCounter.linkEvaluationsPerSearch());
+                System.out.println("path cache hit rate:         " + pathCache.hitRate());
                 // if (Scalars.lessEquals(costMid, tolerance))
                 // break;
             }
 
-            // DEBUGGING
-            /** DEBUGGING every interval trips, export cost map */
-            if (iterationCount % 50 == 0) {
-                StaticHelper.exportRatioMap(new File(processingDir, "diff"), tripMaintainer.getLookupMap(), Integer.toString(iterationCount));
-                StaticHelper.plotRatioMap(new File(processingDir, "plot"), randomTrips.getRatios(), Integer.toString(iterationCount));
-            }
-            // DEBUGGING END
+            /** every interval trips, export cost map in the background */
+            if (0 < diagnosticsInterval && crossed(iterationBefore, iterationCount, diagnosticsInterval))
+                submitDiagnostics(Integer.toString(iterationCount));
 
             /** intermediate export */
-            if (iterationCount % 30000 == 0)
+            if (crossed(iterationBefore, iterationCount, 30000)) {
+                speeds.exportTo(lsData);
                 StaticHelper.export(processingDir, lsData, "_" + Integer.toString(iterationCount));
+            }
+
+            /** checkpoint of the complete state to resume interrupted runs */
+            if (crossed(iterationBefore, iterationCount, CHECKPOINT_INTERVAL))
+                try {
+                    state.write(new File(processingDir, CHECKPOINT), iterationCount);
+                } catch (IOException e) {
+                    System.err.println("Checkpoint of iterative link speed estimation failed: ");
+                    e.printStackTrace();
+                }
         }
         System.out.println("---- " + iterationCount + " ----");
     }
 
-    private DurationCompare getPathDurationRatio(TaxiTrip trip) {
-        /** create the shortest duration calculator using the linkSpeed data,
-         * must be done again to take into account newest updates */
-        LeastCostPathCalculator lcpc = LinkSpeedLeastPathCalculator.from(network, lsData);
-        ShortestDurationCalculator calc = new ShortestDurationCalculator(lcpc, network, db);
+    /** single trip iteration: route, rescale, route again
+     *
+     * @return number of processed trips */
+    private int iterateSingle() {
+        /** taking random trip */
+        boolean isRandomTrip = random.nextDouble() <= epsilon2.number().doubleValue();
+        TaxiTrip trip = isRandomTrip //
+                ? randomTrips.nextRandom() //
+                : tripMaintainer.getWorst(); // take currently worst trip
+
+        /** compute the path using the current state of the linkSpeed data */
+        DurationCompare compare = router.compare(trip);
+        Scalar pathDurationratio = compare.nwPathDurationRatio;
+        Scalar ratioBefore = compare.nwPathDurationRatio;
+
+        /** if it is a random trip, record the ratio */
+        if (isRandomTrip)
+            randomTrips.addRecordedRatio(ratioBefore);
+
+        /** update cost based on random trips */
+        lastCost = randomTrips.getRatioCost();
+
+        /** rescale factor such that epsilon in [0,1] maps to [f,1] */
+        Scalar rescaleFactor = RealScalar.ONE.subtract( //
+                (RealScalar.ONE.subtract(pathDurationratio)).multiply(epsilon1));
+
+        /** rescale links to approach desired link speed */
+        ApplyScaling.to(speeds, compare.path, rescaleFactor);
+
+        compare = router.compare(trip);
+        pathDurationratio = compare.nwPathDurationRatio;
+
+        if (!StaticHelper.ratioDidImprove(ratioBefore, pathDurationratio)) {
+            // if(true){
+            System.err.println("trip:        " + trip.localId);
+            System.err.println("ratioBefore: " + ratioBefore);
+            System.err.println("ratioAfter:  " + pathDurationratio);
+            System.err.println("Now at trip " + trip.localId);
+            System.err.println("Now at trip " + trip.pickupLoc);
+            System.err.println("Now at trip " + trip.dropoffLoc);
+            System.err.println("compare.path");
+            compare.path.links.forEach(l -> System.err.println(l.getId().toString()));
+            System.err.println("compare.pathDist " + compare.pathDist);
+            System.err.println("compare.duration " + compare.duration);
+            System.err.println("compare.pathTime " + compare.pathTime);
+        }
+
+        tripMaintainer.update(trip, pathDurationratio);
+        return 1;
+    }
+
+    /** batch-synchronous iteration: a batch of distinct trips is routed concurrently against
+     * the unchanged link speeds, the rescale factors of all trips are merged per link and
+     * applied in one step
+     *
+     * @return number of processed trips */
+    private int iterateBatch() {
+        /** compose the batch, all random draws are taken sequentially for reproducibility */
+        Set<TaxiTrip> batch = new LinkedHashSet<>();
+        Set<TaxiTrip> randomSelected = new HashSet<>();
+        int numWorst = 0;
+        for (int i = 0; i < batchSize; ++i)
+            if (random.nextDouble() <= epsilon2.number().doubleValue()) {
+                TaxiTrip trip = randomTrips.nextRandom();
+                batch.add(trip);
+                randomSelected.add(trip);
+            } else
+                ++numWorst;
+        for (TaxiTrip trip : tripMaintainer.getWorst(numWorst + batch.size())) {
+            if (numWorst == 0)
+                break;
+            if (batch.add(trip))
+                --numWorst;
+        }
+        List<TaxiTrip> trips = new ArrayList<>(batch);
+
+        /** route all trips of the batch against the same state of the link speeds */
+        List<DurationCompare> comparesBefore = routeAll(trips);
+
+        /** record ratios of random trips in batch order and update cost */
+        for (int i = 0; i < trips.size(); ++i)
+            if (randomSelected.contains(trips.get(i)))
+                randomTrips.addRecordedRatio(comparesBefore.get(i).nwPathDurationRatio);
+        lastCost = randomTrips.getRatioCost();
+
+        /** collect the rescale factors of all trips per link */
+        Map<Link, Tensor> linkFactors = new LinkedHashMap<>();
+        for (DurationCompare compare : comparesBefore) {
+            Scalar rescaleFactor = RealScalar.ONE.subtract( //
+                    (RealScalar.ONE.subtract(compare.nwPathDurationRatio)).multiply(epsilon1));
+            for (Link link : compare.path.links)
+                linkFactors.computeIfAbsent(link, l -> Tensors.empty()).append(rescaleFactor);
+        }
+
+        /** merge: every link is rescaled once with the mean factor of the trips passing it */
+        linkFactors.forEach((link, factors) -> ApplyScaling.to(speeds, link, (Scalar) Mean.of(factors)));
+
+        /** route again and update the trip comparison */
+        List<DurationCompare> comparesAfter = routeAll(trips);
+        int notImproved = 0;
+        for (int i = 0; i < trips.size(); ++i) {
+            Scalar ratioAfter = comparesAfter.get(i).nwPathDurationRatio;
+            if (!StaticHelper.ratioDidImprove(comparesBefore.get(i).nwPathDurationRatio, ratioAfter))
+                ++notImproved;
+            tripMaintainer.update(trips.get(i), ratioAfter);
+        }
+        if (0 < notImproved)
+            System.err.println("trips not improved in batch: " + notImproved + " / " + trips.size());
+        return trips.size();
+    }
+
+    /** @return {@link DurationCompare}s of the @param trips in the same order, computed concurrently */
+    private List<DurationCompare> routeAll(List<TaxiTrip> trips) {
+        return trips.parallelStream().map(trip -> routers.get().compare(trip)).collect(Collectors.toList());
+    }
+
+    /** routes a sample of trips with @param routing and with Dijkstra on the current link speeds
+     * and reports the link evaluations per search of both, see {@link SearchCounter} */
+    private void compareToDijkstra(Network network, MatsimAmodeusDatabase db, LinkSpeedRouting routing) {
+        SearchCounter routingCounter = new SearchCounter();
+        SearchCounter dijkstraCounter = new SearchCounter();
+        LinkSpeedRouter routingRouter = //
+                new LinkSpeedRouter(network, db, speeds, routing, routingCounter, new PathCache(speeds));
+        LinkSpeedRouter dijkstraRouter = //
+                new LinkSpeedRouter(network, db, speeds, LinkSpeedRouting.DIJKSTRA, dijkstraCounter, new PathCache(speeds));
+        int deviating = 0;
+        for (TaxiTrip trip : tripMaintainer.getWorst(100))
+            if (!isClose(routingRouter.compare(trip).pathTime, dijkstraRouter.compare(trip).pathTime))
+                ++deviating;
+        System.out.println("link evaluations per search " + routing + ": " + routingCounter.linkEvaluationsPerSearch());
+        System.out.println("link evaluations per search " + LinkSpeedRouting.DIJKSTRA + ": " + dijkstraCounter.linkEvaluationsPerSearch());
+        if (0 < deviating)
+            System.err.println("path durations deviating from " + LinkSpeedRouting.DIJKSTRA + ": " + deviating);
+    }
+
+    private void submitDiagnostics(String label) {
+        if (Objects.nonNull(diagnostics))
+            diagnostics.submit(label, tripMaintainer.getRatioValues(), randomTrips.getRatioValues());
+    }
+
+    /** @return true if the path durations @param pathTime1 and @param pathTime2 differ by at most
+     *         {@link #DURATION_TOLERANCE} relative to the larger one */
+    private static boolean isClose(Scalar pathTime1, Scalar pathTime2) {
+        double time1 = pathTime1.number().doubleValue();
+        double time2 = pathTime2.number().doubleValue();
+        return Math.abs(time1 - time2) <= DURATION_TOLERANCE * Math.max(Math.abs(time1), Math.abs(time2));
+    }
 
-        /** compute ratio of network path and trip duration f */
-        return new DurationCompare(trip, calc);
+    /** @return true if a multiple of @param interval lies in (before, after] */
+    private static boolean crossed(int before, int after, int interval) {
+        return before / interval < after / interval;
     }
 }
@@ -0,0 +1,120 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+
+/** Binary max-heap over the indices {0, ..., capacity - 1} with a primitive double key
+ * per index. Every index is contained at most once, an update of the key of a contained
+ * index is O(log n), access to the maximum is O(1). Entries with equal keys are kept. */
+/* package */ class IndexedMaxHeap {
+    private final double[] keys;
+    /** heap position -> index */
+    private final int[] heap;
+    /** index -> heap position, -1 if not contained */
+    private final int[] position;
+    private int size = 0;
+
+    public IndexedMaxHeap(int capacity) {
+        keys = new double[capacity];
+        heap = new int[capacity];
+        position = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /** inserts @param index with @param key or updates the key if the index is already contained */
+    public void set(int index, double key) {
+        GlobalAssert.that(!Double.isNaN(key));
+        if (contains(index)) {
+            double before = keys[index];
+            keys[index] = key;
+            if (before < key)
+                siftUp(position[index]);
+            else
+                siftDown(position[index]);
+        } else {
+            keys[index] = key;
+            heap[size] = index;
+            position[index] = size;
+            siftUp(size++);
+        }
+    }
+
+    public boolean contains(int index) {
+        return 0 <= position[index];
+    }
+
+    public double key(int index) {
+        GlobalAssert.that(contains(index));
+        return keys[index];
+    }
+
+    /** @return index with the largest key */
+    public int peek() {
+        GlobalAssert.that(0 < size);
+        return heap[0];
+    }
+
+    /** @return the largest key */
+    public double peekKey() {
+        return keys[peek()];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** @return up to @param k indices with the largest keys in descending order of the key,
+     *         computed in O(k log k) without modifying the heap */
+    public int[] top(int k) {
+        int n = Math.min(k, size);
+        int[] top = new int[n];
+        if (n == 0)
+            return top;
+        PriorityQueue<Integer> frontier = new PriorityQueue<>((i, j) -> Double.compare(keys[heap[j]], keys[heap[i]]));
+        frontier.add(0);
+        for (int count = 0; count < n; ++count) {
+            int pos = frontier.poll();
+            top[count] = heap[pos];
+            for (int child = 2 * pos + 1; child <= 2 * pos + 2 && child < size; ++child)
+                frontier.add(child);
+        }
+        return top;
+    }
+
+    private void siftUp(int pos) {
+        while (0 < pos) {
+            int parent = (pos - 1) / 2;
+            if (keys[heap[parent]] >= keys[heap[pos]])
+                return;
+            swap(pos, parent);
+            pos = parent;
+        }
+    }
+
+    private void siftDown(int pos) {
+        while (true) {
+            int largest = pos;
+            int left = 2 * pos + 1;
+            int right = left + 1;
+            if (left < size && keys[heap[largest]] < keys[heap[left]])
+                largest = left;
+            if (right < size && keys[heap[largest]] < keys[heap[right]])
+                largest = right;
+            if (largest == pos)
+                return;
+            swap(pos, largest);
+            pos = largest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int index = heap[i];
+        heap[i] = heap[j];
+        heap[j] = index;
+        position[heap[i]] = i;
+        position[heap[j]] = j;
+    }
+}
@@ -0,0 +1,120 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import amodeus.amodeus.net.MatsimAmodeusDatabase;
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import org.matsim.api.core.v01.network.Network;
+
+import ch.ethz.idsc.tensor.Scalar;
+
+/** Complete state of the iterative link speed estimation: link speeds, trip ratios,
+ * query counts, window of recorded ratios and random generator. The state is either
+ * initialized for a new run or read from a compact binary checkpoint, which allows
+ * to continue an interrupted run where it stopped. Trips are identified by their
+ * position in the list of all trips, which therefore must be identical on resume. */
+/* package */ class IterationState {
+    private static final int VERSION = 1;
+
+    /** @return initial state with free speed ratios of all trips computed with @param routing */
+    public static IterationState initial(Network network, MatsimAmodeusDatabase db, List<TaxiTrip> allTrips, //
+            int dt, int checkHorizon, Function<RatioWindow, Scalar> costFunction, Random random, LinkSpeedRouting routing) {
+        DenseLinkSpeeds speeds = new DenseLinkSpeeds(network, dt);
+        RandomTripMaintainer randomTrips = new RandomTripMaintainer(allTrips, checkHorizon, costFunction, random);
+        LinkSpeedRouter router = new LinkSpeedRouter(network, db, speeds, routing, new SearchCounter(), new PathCache(speeds));
+        TripComparisonMaintainer tripMaintainer = new TripComparisonMaintainer(randomTrips, router);
+        return new IterationState(allTrips, 0, random, speeds, randomTrips, tripMaintainer);
+    }
+
+    /** @return state read from @param checkpoint written by {@link #write(File, int)}
+     * @throws IOException if the checkpoint cannot be read or does not match the trips or network */
+    public static IterationState read(File checkpoint, Network network, List<TaxiTrip> allTrips, //
+            int dt, int checkHorizon, Function<RatioWindow, Scalar> costFunction) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(checkpoint))))) {
+            if (in.readInt() != VERSION)
+                throw new IOException("unknown checkpoint version");
+            int iterationCount = in.readInt();
+            Random random = readRandom(in);
+            DenseLinkSpeeds speeds = new DenseLinkSpeeds(network, dt);
+            speeds.read(in);
+            RandomTripMaintainer randomTrips = new RandomTripMaintainer(in, allTrips, checkHorizon, costFunction, random);
+            TripComparisonMaintainer tripMaintainer = new TripComparisonMaintainer(in, allTrips);
+            return new IterationState(allTrips, iterationCount, random, speeds, randomTrips, tripMaintainer);
+        }
+    }
+
+    // ---
+    private final Map<TaxiTrip, Integer> tripIndex = new HashMap<>();
+    /** number of iterations already performed */
+    public final int iterationCount;
+    public final Random random;
+    public final DenseLinkSpeeds speeds;
+    public final RandomTripMaintainer randomTrips;
+    public final TripComparisonMaintainer tripMaintainer;
+
+    private IterationState(List<TaxiTrip> allTrips, int iterationCount, Random random, DenseLinkSpeeds speeds, //
+            RandomTripMaintainer randomTrips, TripComparisonMaintainer tripMaintainer) {
+        for (int i = 0; i < allTrips.size(); ++i)
+            tripIndex.put(allTrips.get(i), i);
+        this.iterationCount = iterationCount;
+        this.random = random;
+        this.speeds = speeds;
+        this.randomTrips = randomTrips;
+        this.tripMaintainer = tripMaintainer;
+    }
+
+    /** writes the current state after @param iterationCount iterations to @param checkpoint, the
+     * file is replaced only once the checkpoint is complete */
+    public void write(File checkpoint, int iterationCount) throws IOException {
+        File temp = new File(checkpoint.getParentFile(), checkpoint.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))))) {
+            out.writeInt(VERSION);
+            out.writeInt(iterationCount);
+            writeRandom(out, random);
+            speeds.write(out);
+            randomTrips.write(out, tripIndex);
+            tripMaintainer.write(out, tripIndex);
+        }
+        Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeRandom(DataOutputStream out, Random random) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(bytes)) {
+            objectOutputStream.writeObject(random);
+        }
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static Random readRandom(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return (Random) objectInputStream.readObject();
+        } catch (ClassNotFoundException classNotFoundException) {
+            throw new IOException(classNotFoundException);
+        }
+    }
+}
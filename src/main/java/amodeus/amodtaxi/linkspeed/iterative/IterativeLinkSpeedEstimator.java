@@ -4,6 +4,7 @@ package amodeus.amodtaxi.linkspeed.iterative;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 import java.util.Random;
@@ -39,10 +40,32 @@ public class IterativeLinkSpeedEstimator implements TaxiLinkSpeedEstimator {
     private final Scalar epsilon2 = RealScalar.of(0.8);
     private final Random random;
     private final int dt = 450;
+    /** number of trips routed concurrently per step, 1 runs the serial algorithm */
+    private final int batchSize;
+    /** number of iterations between two diagnostics exports, 0 disables them */
+    private final int diagnosticsInterval;
+    private final LinkSpeedRouting routing;
 
     public IterativeLinkSpeedEstimator(int maxIter, Random random) {
+        this(maxIter, random, 1);
+    }
+
+    /** @param batchSize number of trips which are routed concurrently on all cores against
+     *            the same link speeds before their rescale factors are merged, results are
+     *            reproducible for a given seed of @param random and batch size */
+    public IterativeLinkSpeedEstimator(int maxIter, Random random, int batchSize) {
+        this(maxIter, random, batchSize, FindCongestionIterative.DIAGNOSTICS_INTERVAL, LinkSpeedRouting.DIJKSTRA);
+    }
+
+    /** @param diagnosticsInterval number of iterations between two exports of the ratio map and
+     *            histogram, which are written in the background, 0 disables the diagnostics
+     * @param routing search algorithm for the shortest paths, e.g., {@link LinkSpeedRouting#ALT} */
+    public IterativeLinkSpeedEstimator(int maxIter, Random random, int batchSize, int diagnosticsInterval, LinkSpeedRouting routing) {
         this.maxIter = maxIter;
         this.random = random;
+        this.batchSize = batchSize;
+        this.diagnosticsInterval = diagnosticsInterval;
+        this.routing = routing;
     }
 
     public void compute(File processingDir, Network network, MatsimAmodeusDatabase db, List<TaxiTrip> trips) {
@@ -60,13 +83,48 @@ public class IterativeLinkSpeedEstimator implements TaxiLinkSpeedEstimator {
         /** create link speed data container */
         lsData = new LinkSpeedDataContainer();
 
+        /** a checkpoint of an earlier run does not belong to this run */
+        deleteCheckpoint(processingDir);
+
         /** load initial trips */
         System.out.println("Number of trips: " + trips.size());
-        new FindCongestionIterative(network, db, processingDir, lsData, trips, maxIter, //
-                tolerance, epsilon1, epsilon2, random, dt, Cost::max, trips.size());
+        IterationState state = IterationState.initial(network, db, trips, dt, trips.size(), Cost::max, random, routing);
+        new FindCongestionIterative(network, db, processingDir, lsData, maxIter, //
+                tolerance, epsilon1, epsilon2, batchSize, diagnosticsInterval, routing, state);
+
+        /** final export, the run is complete and cannot be resumed */
+        StaticHelper.export(processingDir, lsData, "");
+        deleteCheckpoint(processingDir);
+    }
 
-        /** final export */
+    /** continues an interrupted run of {@link #compute(File, Network, MatsimAmodeusDatabase, List)} from
+     * the @param checkpoint written periodically to the processing directory, the @param trips must
+     * be identical and in the same order as in the interrupted run
+     * 
+     * @throws IOException if the checkpoint cannot be read or does not match the trips or network */
+    public void resume(File checkpoint, File processingDir, Network network, MatsimAmodeusDatabase db, List<TaxiTrip> trips) throws IOException {
+        /** create link speed data container */
+        lsData = new LinkSpeedDataContainer();
+
+        /** load state of interrupted run */
+        IterationState state = IterationState.read(checkpoint, network, trips, dt, trips.size(), Cost::max);
+        new FindCongestionIterative(network, db, processingDir, lsData, maxIter, //
+                tolerance, epsilon1, epsilon2, batchSize, diagnosticsInterval, routing, state);
+
+        /** final export, the run is complete and cannot be resumed */
         StaticHelper.export(processingDir, lsData, "");
+        deleteCheckpoint(processingDir);
+    }
+
+    /** @return checkpoint file written periodically by runs in @param processingDir */
+    public static File checkpoint(File processingDir) {
+        return new File(processingDir, FindCongestionIterative.CHECKPOINT);
+    }
+
+    private static void deleteCheckpoint(File processingDir) {
+        File checkpoint = checkpoint(processingDir);
+        if (checkpoint.isFile() && !checkpoint.delete())
+            System.err.println("Checkpoint could not be deleted: " + checkpoint.getAbsolutePath());
     }
 
     @Override
@@ -76,7 +134,9 @@ public class IterativeLinkSpeedEstimator implements TaxiLinkSpeedEstimator {
 
     // -------
 
+    /** continues an interrupted run from its checkpoint if started with the argument "resume" */
     public static void main(String[] args) throws IOException {
+        boolean resume = Arrays.asList(args).contains("resume");
         File processingDir = HomeDirectory.file("data/TaxiComparison_ChicagoScCr/Scenario");
         File finalTripsFile = HomeDirectory.file("data/TaxiComparison_ChicagoScCr/Scenario/"//
                 + "tripData/Taxi_Trips_2019_07_19_prepared_filtered_modified_final.csv");
@@ -96,6 +156,18 @@ public class IterativeLinkSpeedEstimator implements TaxiLinkSpeedEstimator {
         // List<TaxiTrip> trips = new ArrayList<>();
         // ImportTaxiTrips.fromFile(finalTripsFile).forEach(trips::add);
         List<TaxiTrip> trips = new ArrayList<>(ImportTaxiTrips.fromFile(finalTripsFile));
-        new IterativeLinkSpeedEstimator(200000, new Random(123)).compute(processingDir, network, db, trips);
+        IterativeLinkSpeedEstimator estimator = new IterativeLinkSpeedEstimator(200000, new Random(123));
+        File checkpoint = checkpoint(processingDir);
+        if (resume) {
+            /** continue where the previous run stopped */
+            if (!checkpoint.isFile())
+                throw new IOException("no checkpoint to resume: " + checkpoint.getAbsolutePath());
+            System.out.println("Resuming from checkpoint: " + checkpoint.getAbsolutePath());
+            estimator.resume(checkpoint, processingDir, network, db, trips);
+        } else {
+            if (checkpoint.isFile())
+                System.out.println("Starting a new run, the checkpoint of the previous run is discarded: " + checkpoint.getAbsolutePath());
+            estimator.compute(processingDir, network, db, trips);
+        }
     }
 }
@@ -13,7 +13,10 @@ public enum LinkSpeedLeastPathCalculator {
     ;
 
     public static LeastCostPathCalculator from(Network network, LinkSpeedDataContainer lsData) {
-        TravelTime travelTime = new LSDataTravelTime(lsData);
+        return from(network, new LSDataTravelTime(lsData));
+    }
+
+    public static LeastCostPathCalculator from(Network network, TravelTime travelTime) {
         return new DijkstraFactory().createPathCalculator(network, //
                 new OnlyTimeDependentTravelDisutility(travelTime), travelTime);
     }
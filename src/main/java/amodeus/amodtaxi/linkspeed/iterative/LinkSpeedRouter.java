@@ -0,0 +1,62 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.Objects;
+
+import amodeus.amodeus.net.MatsimAmodeusDatabase;
+import amodeus.amodeus.taxitrip.ShortestDurationCalculator;
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.costcalculators.OnlyTimeDependentTravelDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.vehicles.Vehicle;
+
+/** Routing engine for the iterative link speed estimation which is built once per
+ * estimation run. The travel times are read live from the {@link DenseLinkSpeeds}
+ * during every search, i.e., updates of the link speeds are taken into account without
+ * rebuilding the path calculator or the link lookup. Paths which are still shortest
+ * paths are taken from the {@link PathCache} without a search.
+ *
+ * Hint: instances are not thread safe, every thread requires its own router. */
+/* package */ class LinkSpeedRouter {
+    private final ShortestDurationCalculator calc;
+    private final SearchCounter counter;
+    private final PathCache pathCache;
+    /** departure time of the last search, NaN if no search was run */
+    private double departure;
+
+    public LinkSpeedRouter(Network network, MatsimAmodeusDatabase db, DenseLinkSpeeds speeds, //
+            LinkSpeedRouting routing, SearchCounter counter, PathCache pathCache) {
+        this.counter = counter;
+        this.pathCache = pathCache;
+        TravelDisutility travelDisutility = counter.counting(new OnlyTimeDependentTravelDisutility(speeds));
+        LeastCostPathCalculator search = routing.create(network, travelDisutility, speeds);
+        /** records the departure time required to re-evaluate cached paths */
+        LeastCostPathCalculator lcpc = new LeastCostPathCalculator() {
+            @Override
+            public Path calcLeastCostPath(Node fromNode, Node toNode, double starttime, Person person, Vehicle vehicle) {
+                departure = starttime;
+                return search.calcLeastCostPath(fromNode, toNode, starttime, person, vehicle);
+            }
+        };
+        calc = new ShortestDurationCalculator(lcpc, network, db);
+    }
+
+    /** @return {@link DurationCompare} of the @param trip with its shortest path
+     *         according to the current state of the link speeds */
+    public DurationCompare compare(TaxiTrip trip) {
+        Path path = pathCache.get(trip);
+        if (Objects.isNull(path)) {
+            counter.countSearch();
+            departure = Double.NaN;
+            path = calc.computePath(trip);
+            if (!Double.isNaN(departure))
+                pathCache.put(trip, path, departure);
+        }
+        return new DurationCompare(trip, path);
+    }
+}
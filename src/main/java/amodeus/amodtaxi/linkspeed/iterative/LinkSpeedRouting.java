@@ -0,0 +1,44 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.AStarLandmarksFactory;
+import org.matsim.core.router.DijkstraFactory;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/** Search algorithms for the shortest duration paths of the link speed estimation. */
+public enum LinkSpeedRouting {
+    /** plain Dijkstra search */
+    DIJKSTRA {
+        private final LeastCostPathCalculatorFactory factory = new DijkstraFactory();
+
+        @Override
+        protected LeastCostPathCalculatorFactory factory() {
+            return factory;
+        }
+    },
+    /** A* search with landmarks (ALT), the landmark tables are computed once per network from the
+     * minimum travel disutility, i.e., the free flow travel times. As the estimation never increases
+     * link speeds beyond the free speed, the free flow travel times remain a valid lower bound and
+     * the search returns the same shortest paths as Dijkstra. */
+    ALT {
+        private final LeastCostPathCalculatorFactory factory = //
+                new AStarLandmarksFactory(Runtime.getRuntime().availableProcessors());
+
+        @Override
+        protected LeastCostPathCalculatorFactory factory() {
+            return factory;
+        }
+    };
+
+    protected abstract LeastCostPathCalculatorFactory factory();
+
+    /** @return path calculator on @param network, the factories are shared such that preprocessed
+     *         data is computed only once per network */
+    public LeastCostPathCalculator create(Network network, TravelDisutility travelDisutility, TravelTime travelTime) {
+        return factory().createPathCalculator(network, travelDisutility, travelTime);
+    }
+}
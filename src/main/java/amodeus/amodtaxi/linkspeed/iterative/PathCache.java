@@ -0,0 +1,74 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+/** Shortest paths of the trips together with the version of the {@link DenseLinkSpeeds} they
+ * were computed under. A cached path is reused as long as no change of the link speeds since
+ * its computation can have altered the shortest path, its travel time is then re-evaluated
+ * with the current link speeds instead of running a full search.
+ *
+ * The cache is thread safe and may be shared by the routers of several threads, as long as the
+ * link speeds are not modified concurrently. */
+/* package */ class PathCache {
+    private static class Entry {
+        private final Path path;
+        private final double departure;
+        private final long version;
+        /** sorted indices of the links of the path */
+        private final int[] pathLinks;
+
+        private Entry(Path path, double departure, long version, int[] pathLinks) {
+            this.path = path;
+            this.departure = departure;
+            this.version = version;
+            this.pathLinks = pathLinks;
+        }
+    }
+
+    // ---
+    private final Map<TaxiTrip, Entry> entries = new ConcurrentHashMap<>();
+    private final DenseLinkSpeeds speeds;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public PathCache(DenseLinkSpeeds speeds) {
+        this.speeds = speeds;
+    }
+
+    /** @return path of @param trip with its travel time according to the current link speeds,
+     *         or null if there is no cached path or it may no longer be a shortest path */
+    public Path get(TaxiTrip trip) {
+        lookups.increment();
+        Entry entry = entries.get(trip);
+        if (Objects.isNull(entry) || !speeds.keepsShortestPath(entry.version, entry.pathLinks))
+            return null;
+        hits.increment();
+        double time = entry.departure;
+        for (Link link : entry.path.links)
+            time += speeds.getLinkTravelTime(link, time, null, null);
+        double travelTime = time - entry.departure;
+        /** the travel disutility of the estimation is the travel time */
+        return new Path(entry.path.nodes, entry.path.links, travelTime, travelTime);
+    }
+
+    /** stores the @param path of @param trip departing at time @param departure, which
+     * is a shortest path according to the current link speeds */
+    public void put(TaxiTrip trip, Path path, double departure) {
+        int[] pathLinks = path.links.stream().mapToInt(speeds::indexOf).sorted().toArray();
+        entries.put(trip, new Entry(path, departure, speeds.version(), pathLinks));
+    }
+
+    /** @return fraction of lookups answered from the cache */
+    public double hitRate() {
+        long count = lookups.sum();
+        return count == 0 ? 0 : hits.sum() / (double) count;
+    }
+}
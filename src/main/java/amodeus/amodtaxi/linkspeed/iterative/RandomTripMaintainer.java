@@ -1,77 +1,106 @@
 /* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
 package amodeus.amodtaxi.linkspeed.iterative;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.NavigableMap;
+import java.util.Map;
 import java.util.Random;
-import java.util.Set;
-import java.util.TreeMap;
 import java.util.function.Function;
 
-import amodeus.amodeus.dispatcher.util.FIFOFixedQueue;
 import amodeus.amodeus.taxitrip.TaxiTrip;
-import amodeus.amodeus.util.math.GlobalAssert;
 import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
 
 public class RandomTripMaintainer {
     /** random generator */
     private final Random random;
-    /** maintaining a list of last recorded ratios */
-    private final FIFOFixedQueue<Scalar> lastRatios;
-    /** number of trips used for convergence assessment */
-    private final int checkHorizon;
+    /** maintaining the last recorded ratios, the window length is the
+     * number of trips used for convergence assessment */
+    private final RatioWindow lastRatios;
     /** cost function for convergence check */
-    private final Function<List<Scalar>, Scalar> costFunction;
-    /** map tracking number of queries; Integer denotes times the trips was queried, so all trips start with key 0 */
-    private final NavigableMap<Integer, Set<TaxiTrip>> queryMap = new TreeMap<>();
+    private final Function<RatioWindow, Scalar> costFunction;
+    /** since trips are only ever taken from the least queried ones, the query counts of two trips
+     * differ by at most one: the trips at positions [0, remaining) were queried round times,
+     * the trips at positions [remaining, numTrips) were queried round + 1 times */
+    private final TaxiTrip[] trips;
+    private int remaining;
+    private int round = 0;
     private final int numTrips;
 
     public RandomTripMaintainer(List<TaxiTrip> allTrips, int checkHorizon, //
-            Function<List<Scalar>, Scalar> costFunction, Random random) {
-        lastRatios = new FIFOFixedQueue<>(allTrips.size());
-        this.checkHorizon = checkHorizon > allTrips.size() ? allTrips.size() : checkHorizon;
+            Function<RatioWindow, Scalar> costFunction, Random random) {
+        lastRatios = new RatioWindow(checkHorizon > allTrips.size() ? allTrips.size() : checkHorizon);
         this.costFunction = costFunction;
         this.random = random;
         numTrips = allTrips.size();
 
-        /** fill query map */
-        Collections.shuffle(allTrips, random);
-        queryMap.put(0, new HashSet<TaxiTrip>(allTrips));
-        GlobalAssert.that(allTrips.size() == queryMap.firstEntry().getValue().size());
+        /** all trips start with zero queries */
+        List<TaxiTrip> shuffled = new ArrayList<>(allTrips);
+        Collections.shuffle(shuffled, random);
+        trips = shuffled.toArray(new TaxiTrip[numTrips]);
+        remaining = numTrips;
     }
 
-    /** queries next trip, trip is removed from list with lowest key in querymap(least amount of queries) and put in list with key+1
+    /** restores the state written by {@link #write(DataOutput, Map)} from @param in, trips are
+     * identified by their position in @param allTrips */
+    /* package */ RandomTripMaintainer(DataInput in, List<TaxiTrip> allTrips, int checkHorizon, //
+            Function<RatioWindow, Scalar> costFunction, Random random) throws IOException {
+        lastRatios = new RatioWindow(checkHorizon > allTrips.size() ? allTrips.size() : checkHorizon);
+        this.costFunction = costFunction;
+        this.random = random;
+        numTrips = allTrips.size();
+        if (in.readInt() != numTrips)
+            throw new IOException("number of trips does not match");
+        remaining = in.readInt();
+        round = in.readInt();
+        trips = new TaxiTrip[numTrips];
+        for (int i = 0; i < numTrips; ++i)
+            trips[i] = allTrips.get(in.readInt());
+        lastRatios.read(in);
+    }
+
+    /** queries next trip uniformly among the trips with the least amount of queries, the trip
+     * is swapped to the end of the segment of least queried trips in O(1)
      *
      * @return queried {@link TaxiTrip} */
     public TaxiTrip nextRandom() {
-        // find set of trips with least checks
-        int numChecks = 0;
-        while (!(queryMap.ceilingEntry(numChecks).getValue().size() > 0))
-            ++numChecks;
-
-        Set<TaxiTrip> leastChecked = queryMap.ceilingEntry(numChecks).getValue();
+        // all trips have the same number of queries, start next round
+        if (remaining == 0) {
+            ++round;
+            remaining = numTrips;
+        }
 
-        // select random trip from it
-        TaxiTrip selected = leastChecked.stream().skip(random.nextInt(leastChecked.size())).findFirst().get();
-        // move to set with +1 checks
-        GlobalAssert.that(leastChecked.remove(selected));
-        if (queryMap.lastKey() == numChecks)
-            queryMap.put(numChecks + 1, new HashSet<>());
-        queryMap.ceilingEntry(numChecks + 1).getValue().add(selected);
-
-        // return
+        // select random trip among least checked and move to segment with +1 checks
+        int index = random.nextInt(remaining);
+        TaxiTrip selected = trips[index];
+        trips[index] = trips[--remaining];
+        trips[remaining] = selected;
         return selected;
     }
 
     public void addRecordedRatio(Scalar ratio) {
-        lastRatios.manage(ratio);
+        lastRatios.add(ratio.number().doubleValue());
     }
 
+    /** @return cost of the recorded ratios, O(1) for the costs in {@link Cost} */
     public Scalar getRatioCost() {
-        return costFunction.apply(lastRatios.getNewest(checkHorizon));
+        return costFunction.apply(lastRatios);
+    }
+
+    /** writes query counts and recorded ratios to @param out, trips are written as
+     * their index in @param tripIndex */
+    public void write(DataOutput out, Map<TaxiTrip, Integer> tripIndex) throws IOException {
+        out.writeInt(numTrips);
+        out.writeInt(remaining);
+        out.writeInt(round);
+        for (TaxiTrip trip : trips)
+            out.writeInt(tripIndex.get(trip));
+        lastRatios.write(out);
     }
 
     public int numTrips() {
@@ -79,6 +108,11 @@ public class RandomTripMaintainer {
     }
 
     public Tensor getRatios() {
-        return Tensor.of(lastRatios.getNewest(checkHorizon).stream());
+        return Tensors.vectorDouble(getRatioValues());
+    }
+
+    /** @return copy of the recorded ratios used for the cost */
+    public double[] getRatioValues() {
+        return lastRatios.values();
     }
 }
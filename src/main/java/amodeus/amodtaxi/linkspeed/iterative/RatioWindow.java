@@ -0,0 +1,101 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.stream.DoubleStream;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+
+/** Sliding window over the newest recorded path duration ratios. The maximum deviation
+ * max |ratio - 1| and the mean ratio of the window are maintained incrementally in
+ * O(1) amortized time per recorded ratio, using a monotonic deque and a running sum. */
+/* package */ class RatioWindow {
+    private final int capacity;
+    /** ring buffer of ratios */
+    private final double[] ratios;
+    private long recorded = 0;
+    private double sum = 0;
+    /** monotonic deque of (sequence number, deviation) with decreasing deviations */
+    private final long[] dequeSeq;
+    private final double[] dequeDev;
+    private int dequeHead = 0;
+    private int dequeSize = 0;
+
+    public RatioWindow(int capacity) {
+        GlobalAssert.that(0 < capacity);
+        this.capacity = capacity;
+        ratios = new double[capacity];
+        dequeSeq = new long[capacity];
+        dequeDev = new double[capacity];
+    }
+
+    public void add(double ratio) {
+        int slot = (int) (recorded % capacity);
+        if (capacity <= recorded)
+            sum -= ratios[slot];
+        ratios[slot] = ratio;
+        sum += ratio;
+        long seq = recorded++;
+        /** recompute the sum once per window length to avoid accumulation of rounding errors */
+        if (seq % capacity == capacity - 1)
+            sum = DoubleStream.of(ratios).sum();
+
+        /** maintain deque */
+        double deviation = Math.abs(ratio - 1);
+        while (0 < dequeSize && dequeDev[index(dequeSize - 1)] <= deviation)
+            --dequeSize;
+        if (0 < dequeSize && dequeSeq[dequeHead] <= seq - capacity) {
+            dequeHead = index(1);
+            --dequeSize;
+        }
+        dequeSeq[index(dequeSize)] = seq;
+        dequeDev[index(dequeSize)] = deviation;
+        ++dequeSize;
+    }
+
+    public int size() {
+        return (int) Math.min(recorded, capacity);
+    }
+
+    /** @return max |ratio - 1| over the window */
+    public double maxDeviation() {
+        GlobalAssert.that(0 < dequeSize);
+        return dequeDev[dequeHead];
+    }
+
+    /** @return mean ratio of the window */
+    public double mean() {
+        GlobalAssert.that(0 < size());
+        return sum / size();
+    }
+
+    /** @return ratios currently in the window, in no particular order */
+    public double[] values() {
+        return DoubleStream.of(ratios).limit(size()).toArray();
+    }
+
+    /** writes the ratios of the window from oldest to newest to @param out */
+    public void write(DataOutput out) throws IOException {
+        int size = size();
+        out.writeInt(size);
+        for (long seq = recorded - size; seq < recorded; ++seq)
+            out.writeDouble(ratios[(int) (seq % capacity)]);
+    }
+
+    /** replaces the content with the ratios read from @param in as written by {@link #write(DataOutput)} */
+    public void read(DataInput in) throws IOException {
+        recorded = 0;
+        sum = 0;
+        dequeHead = 0;
+        dequeSize = 0;
+        int size = in.readInt();
+        for (int count = 0; count < size; ++count)
+            add(in.readDouble());
+    }
+
+    private int index(int offset) {
+        return (dequeHead + offset) % capacity;
+    }
+}
@@ -0,0 +1,50 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.vehicles.Vehicle;
+
+/** Counts searches and link evaluations, i.e., calls of the travel disutility, of the routers
+ * sharing the counter. The path calculators of MATSim do not expose the number of settled
+ * nodes, hence the link evaluations serve as proxy: Dijkstra and A* with landmarks evaluate
+ * the outgoing links of every node they settle, so the count is about the number of settled
+ * nodes weighted by their out-degree and compares the effort of both on the same network.
+ * The counter is thread safe. */
+/* package */ class SearchCounter {
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder linkEvaluations = new LongAdder();
+
+    /** @return @param travelDisutility which counts its evaluations */
+    public TravelDisutility counting(TravelDisutility travelDisutility) {
+        return new TravelDisutility() {
+            @Override
+            public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+                linkEvaluations.increment();
+                return travelDisutility.getLinkTravelDisutility(link, time, person, vehicle);
+            }
+
+            @Override
+            public double getLinkMinimumTravelDisutility(Link link) {
+                return travelDisutility.getLinkMinimumTravelDisutility(link);
+            }
+        };
+    }
+
+    public void countSearch() {
+        searches.increment();
+    }
+
+    public long searches() {
+        return searches.sum();
+    }
+
+    /** @return mean number of link evaluations per search */
+    public double linkEvaluationsPerSearch() {
+        long count = searches.sum();
+        return count == 0 ? 0 : linkEvaluations.sum() / (double) count;
+    }
+}
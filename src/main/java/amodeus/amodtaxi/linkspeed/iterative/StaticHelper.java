@@ -64,6 +64,10 @@ import ch.ethz.idsc.tensor.pdf.BinCounts;
 	public static void exportRatioMap(File relativeDirectory, Map<TaxiTrip, Scalar> ratioLookupMap, String append) {
 		Tensor all = Tensors.empty();
 		ratioLookupMap.values().forEach(all::append);
+		exportRatios(relativeDirectory, all, append);
+	}
+
+	public static void exportRatios(File relativeDirectory, Tensor all, String append) {
 		try {
 			SaveFormats.MATHEMATICA.save(all, relativeDirectory, "diff" + append);
 		} catch (IOException e) {
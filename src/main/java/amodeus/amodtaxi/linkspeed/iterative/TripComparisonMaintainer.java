@@ -1,70 +1,107 @@
 /* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
 package amodeus.amodtaxi.linkspeed.iterative;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
-
+import java.util.List;
 import java.util.Map;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
-import amodeus.amodeus.net.MatsimAmodeusDatabase;
-import amodeus.amodeus.taxitrip.ShortestDurationCalculator;
 import amodeus.amodeus.taxitrip.TaxiTrip;
 import amodeus.amodeus.util.math.GlobalAssert;
-import org.matsim.api.core.v01.network.Network;
 
 import ch.ethz.idsc.tensor.RealScalar;
 import ch.ethz.idsc.tensor.Scalar;
 
 /* package */ class TripComparisonMaintainer {
-    // TODO can maintain same size more pretty?
     private final Map<TaxiTrip, Scalar> ratioLookupMap = new HashMap<>();
-    private final NavigableMap<Scalar, TaxiTrip> ratioSortedMap = new TreeMap<>();
+    /** trip index in order of the initial fill */
+    private final Map<TaxiTrip, Integer> tripIndex = new HashMap<>();
+    private final TaxiTrip[] trips;
+    /** cost |ratio - 1| of every trip keyed by trip index */
+    private final IndexedMaxHeap costHeap;
 
-    public TripComparisonMaintainer(RandomTripMaintainer randomTrips, Network network, MatsimAmodeusDatabase db) {
+    /** @param router used for the initial ratios, expected to route with free speeds */
+    public TripComparisonMaintainer(RandomTripMaintainer randomTrips, LinkSpeedRouter router) {
+        trips = new TaxiTrip[randomTrips.numTrips()];
+        costHeap = new IndexedMaxHeap(trips.length);
         // initial fill
-        ShortestDurationCalculator calc = new ShortestDurationCalculator(network, db);
         for (int i = 0; i < randomTrips.numTrips(); ++i) {
             if (i % 100 == 0)
                 System.out.println("Freespeed length calculation: " + i);
             TaxiTrip trip = randomTrips.nextRandom();
-            DurationCompare compare = new DurationCompare(trip, calc);
+            DurationCompare compare = router.compare(trip);
             Scalar pathDurationratio = compare.nwPathDurationRatio;
             randomTrips.addRecordedRatio(pathDurationratio);
+            trips[i] = trip;
+            tripIndex.put(trip, i);
             ratioLookupMap.put(trip, pathDurationratio);
-            Scalar cost = pathDurationratio.subtract(RealScalar.ONE).abs();
-            ratioSortedMap.put(cost, trip);
+            costHeap.set(i, cost(pathDurationratio));
         }
-        GlobalAssert.that(ratioSortedMap.size() <= ratioLookupMap.size());
+        GlobalAssert.that(costHeap.size() == ratioLookupMap.size());
     }
 
-    public void update(TaxiTrip trip, Scalar pathDurationratio) {
-        // remove using old value
-        Scalar ratioBefore = ratioLookupMap.get(trip);
-        Scalar costBefore = ratioBefore.subtract(RealScalar.ONE).abs();
-        // update worst trip
-        if (!ratioSortedMap.remove(costBefore, trip)) {
-            // GlobalAssert.that(false); // TODO To check why should this happen?
-            System.out.println("Cleansing sorted map...");
-            // if not removed successfully, remove all values associated to this trip.
-            ratioSortedMap.entrySet().removeIf(e -> e.getValue().equals(trip));
+    /** restores the state written by {@link #write(DataOutput, Map)} from @param in, trips are
+     * identified by their position in @param allTrips */
+    public TripComparisonMaintainer(DataInput in, List<TaxiTrip> allTrips) throws IOException {
+        trips = new TaxiTrip[in.readInt()];
+        if (trips.length != allTrips.size())
+            throw new IOException("number of trips does not match");
+        costHeap = new IndexedMaxHeap(trips.length);
+        for (int i = 0; i < trips.length; ++i) {
+            TaxiTrip trip = allTrips.get(in.readInt());
+            Scalar pathDurationratio = RealScalar.of(in.readDouble());
+            trips[i] = trip;
+            tripIndex.put(trip, i);
+            ratioLookupMap.put(trip, pathDurationratio);
+            costHeap.set(i, cost(pathDurationratio));
         }
-        ratioSortedMap.put(pathDurationratio.subtract(RealScalar.ONE).abs(), trip);
-        // update lookupMap
+    }
+
+    public void update(TaxiTrip trip, Scalar pathDurationratio) {
+        Integer index = tripIndex.get(trip);
+        GlobalAssert.that(index != null);
+        costHeap.set(index, cost(pathDurationratio));
         ratioLookupMap.put(trip, pathDurationratio);
-        GlobalAssert.that(ratioSortedMap.size() <= ratioLookupMap.size());
     }
 
     public TaxiTrip getWorst() {
-        return ratioSortedMap.lastEntry().getValue();
+        return trips[costHeap.peek()];
+    }
+
+    /** @return up to @param n distinct trips with the largest cost, worst first */
+    public List<TaxiTrip> getWorst(int n) {
+        return IntStream.of(costHeap.top(n)).mapToObj(i -> trips[i]).collect(Collectors.toList());
     }
 
     public Scalar getWorstCost() {
-        return ratioSortedMap.lastEntry().getKey();
+        return RealScalar.of(costHeap.peekKey());
     }
 
     public Map<TaxiTrip, Scalar> getLookupMap() {
         return Collections.unmodifiableMap(ratioLookupMap);
     }
+
+    /** @return copy of the current ratios of all trips */
+    public double[] getRatioValues() {
+        return ratioLookupMap.values().stream().mapToDouble(ratio -> ratio.number().doubleValue()).toArray();
+    }
+
+    /** writes the ratios of all trips to @param out, trips are written as their
+     * index in @param allTripsIndex */
+    public void write(DataOutput out, Map<TaxiTrip, Integer> allTripsIndex) throws IOException {
+        out.writeInt(trips.length);
+        for (TaxiTrip trip : trips) {
+            out.writeInt(allTripsIndex.get(trip));
+            out.writeDouble(ratioLookupMap.get(trip).number().doubleValue());
+        }
+    }
+
+    private static double cost(Scalar pathDurationratio) {
+        return pathDurationratio.subtract(RealScalar.ONE).abs().number().doubleValue();
+    }
 }
@@ -4,7 +4,6 @@ package amodeus.amodtaxi.population;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Stream;
@@ -18,6 +17,7 @@ import amodeus.amodeus.util.AmodeusTimeConvert;
 import amodeus.amodeus.util.io.GZHandler;
 import amodeus.amodeus.util.math.GlobalAssert;
 import amodeus.amodtaxi.scenario.ScenarioLabels;
+import amodeus.amodtaxi.taxitrip.TaxiTripTable;
 import amodeus.amodtaxi.util.NamingConvention;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.api.core.v01.population.Person;
@@ -68,6 +68,17 @@ public class TripPopulationCreator {
     }
 
     public void process(List<TaxiTrip> trips, File finalTripFile) throws MalformedURLException, Exception {
+        process(trips.stream(), finalTripFile);
+    }
+
+    /** creates the population from the @param trips held in columns, see {@link #process(Stream, File)} */
+    public void process(TaxiTripTable trips, File finalTripFile) throws MalformedURLException, Exception {
+        process(trips.stream(), finalTripFile);
+    }
+
+    /** creates the population from the @param trips passing the final filters, the trips are
+     * written to @param finalTripFile as they are processed, i.e., they are not collected */
+    public void process(Stream<TaxiTrip> trips, File finalTripFile) throws MalformedURLException, Exception {
         this.finalTripFile = finalTripFile;
 
         // Population init
@@ -75,21 +86,16 @@ public class TripPopulationCreator {
         PopulationFactory populationFactory = population.getFactory();
 
         // filter the stream
-        List<TaxiTrip> finalFilteredTrips = new ArrayList<>();
-        Stream<TaxiTrip> filtered = finalFilters.filterStream(trips.stream());
+        Stream<TaxiTrip> filtered = finalFilters.filterStream(trips);
 
-        // create persons
-        filtered.forEach(taxiTrip -> {
+        // create persons and export finally used set of trips, a person is created for every trip written
+        ExportTaxiTrips.toFile(filtered.map(taxiTrip -> {
             Person person = PersonCreate.fromTrip(taxiTrip, taxiTrip.localId, populationFactory, //
                     fastLinkLookup, simulationDate, timeConvert);
             population.addPerson(person);
             distCalc.addTrip(taxiTrip);
-            finalFilteredTrips.add(taxiTrip);
-        });
-
-        // export finally used set of trips
-
-        ExportTaxiTrips.toFile(finalFilteredTrips.stream(), finalTripFile);
+            return taxiTrip;
+        }), finalTripFile);
 
         // write the modified population to file
         System.out.println("Population size: " + population.getPersons().size());
@@ -0,0 +1,87 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.scenario;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+import amodeus.amodtaxi.util.FixedFormats;
+
+/** Row of a delimited text file read by the {@link TaxiTripsReader}, the fields are accessed
+ * by index, see {@link CsvSchema}, or by the column names of the header. Rows share the
+ * schema of the file, hence rows can be created concurrently for different lines.
+ *
+ * The row only stores the bounds of the fields within the line, numbers and timestamps are
+ * parsed from the line directly, see {@link FixedFormats}. */
+public final class CsvRow {
+    private final CsvSchema schema;
+    private final String line;
+    /** field i spans the characters from bounds[2 * i] to bounds[2 * i + 1], exclusive */
+    private final int[] bounds;
+
+    /** @return row of @param line of a file with @param schema whose fields are separated by @param delim,
+     *         as {@link String#split(String, int)} with limit -1, i.e., empty fields are retained */
+    public static CsvRow of(CsvSchema schema, String line, String delim) {
+        GlobalAssert.that(!delim.isEmpty());
+        int[] bounds = new int[2 * Math.max(1, schema.size())];
+        int length = 0;
+        int start = 0;
+        while (true) {
+            int end = line.indexOf(delim, start);
+            if (bounds.length == length)
+                bounds = Arrays.copyOf(bounds, 2 * length);
+            bounds[length++] = start;
+            bounds[length++] = end < 0 ? line.length() : end;
+            if (end < 0)
+                break;
+            start = end + delim.length();
+        }
+        return new CsvRow(schema, line, length == bounds.length ? bounds : Arrays.copyOf(bounds, length));
+    }
+
+    private CsvRow(CsvSchema schema, String line, int[] bounds) {
+        this.schema = schema;
+        this.line = line;
+        this.bounds = bounds;
+    }
+
+    /** @return field of column @param key
+     * @throws Exception if the column does not exist or the row is too short */
+    public String get(String key) {
+        return get(schema.index(key));
+    }
+
+    /** @return field with @param index */
+    public String get(int index) {
+        return line.substring(bounds[2 * index], bounds[2 * index + 1]);
+    }
+
+    /** @return field with @param index as double
+     * @throws NumberFormatException if the field is not a number */
+    public double getDouble(int index) {
+        return FixedFormats.parseDouble(line, bounds[2 * index], bounds[2 * index + 1]);
+    }
+
+    /** @return field with @param index as long
+     * @throws NumberFormatException if the field is not an integer */
+    public long getLong(int index) {
+        return FixedFormats.parseLong(line, bounds[2 * index], bounds[2 * index + 1]);
+    }
+
+    /** @return field with @param index as timestamp, see {@link FixedFormats#parseTimestamp(CharSequence, int, int, DateTimeFormatter)}
+     * @throws Exception if the field is not a timestamp of @param formatter */
+    public LocalDateTime getTimestamp(int index, DateTimeFormatter formatter) {
+        return FixedFormats.parseTimestamp(line, bounds[2 * index], bounds[2 * index + 1], formatter);
+    }
+
+    /** @return number of fields */
+    public int size() {
+        return bounds.length / 2;
+    }
+
+    @Override
+    public String toString() {
+        return line;
+    }
+}
@@ -0,0 +1,45 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.scenario;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/** Columns of a delimited text file as given in its header. The names are resolved to
+ * indices once per file, e.g., by {@link TaxiTripsReader#compile(CsvSchema)}, such that
+ * the fields of every row are accessed by index. */
+public final class CsvSchema {
+    private final String[] columns;
+    private final Map<String, Integer> indices = new HashMap<>();
+
+    /** @param columns names in the order of the header */
+    public CsvSchema(String[] columns) {
+        this.columns = columns.clone();
+        for (int index = 0; index < columns.length; ++index)
+            indices.put(columns[index], index);
+    }
+
+    /** @return index of @param column
+     * @throws Exception if the file has no such column */
+    public int index(String column) {
+        Integer index = indices.get(column);
+        if (Objects.isNull(index))
+            throw new IllegalArgumentException("no column " + column);
+        return index;
+    }
+
+    /** @return true if the file has @param column */
+    public boolean contains(String column) {
+        return indices.containsKey(column);
+    }
+
+    /** @return number of columns */
+    public int size() {
+        return columns.length;
+    }
+
+    /** @return name of column with @param index */
+    public String column(int index) {
+        return columns[index];
+    }
+}
@@ -9,80 +9,177 @@ import java.text.ParseException;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import amodeus.amodeus.taxitrip.TaxiTrip;
 import amodeus.amodeus.util.Duration;
 import amodeus.amodeus.util.LocalDateTimes;
-import amodeus.amodeus.util.io.CsvReader;
-import amodeus.amodeus.util.io.CsvReader.Row;
 import amodeus.amodeus.util.math.SI;
+import amodeus.amodtaxi.util.ChunkedLines;
+import amodeus.amodtaxi.util.PushStreams;
 import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Scalars;
 import ch.ethz.idsc.tensor.Tensor;
 import ch.ethz.idsc.tensor.qty.Quantity;
 
 public abstract class TaxiTripsReader {
+    /** content of a row parsed without the taxi and trip ids, which depend on the preceding rows */
+    private static class ParsedRow {
+        private final TripFields fields = new TripFields();
+        /** line of the row, only retained if it cannot be parsed */
+        private String line = null;
+        /** null if the row was parsed successfully */
+        private Exception exception = null;
+    }
+
+    // ---
     private final String delim;
     private final Map<String, Integer> taxiIds = new HashMap<>();
+    /** canonical instance of every taxi code, shared by the parsing threads */
+    private final Map<String, String> taxiCodes = new ConcurrentHashMap<>();
     private final List<String> unreadable = new ArrayList<>();
 
     public TaxiTripsReader(String delim) {
         this.delim = delim;
     }
 
+    /** @return all trips in @param file, see {@link #stream(File)} to process large files
+     *         without holding all trips in memory */
     public List<TaxiTrip> getTrips(File file) throws IOException {
-        final AtomicInteger tripIds = new AtomicInteger(0);
-        List<TaxiTrip> list = new LinkedList<>();
-        System.out.println("TaxiTripsReader, reading file: " + file.getAbsolutePath());
-        CsvReader reader = new CsvReader(file, delim);
-        unreadable.add(String.join(",", reader.sortedHeaders()));
-        reader.rows(row -> {
-            int incrm = tripIds.getAndIncrement();
-            String tripId = "no_dat_id_" + Integer.toString(incrm);
-            if (incrm % 1000 == 0)
-                System.out.println("trips: " + tripId);
-            try {
-                String taxiCode = getTaxiId(row);
-                int taxiId = taxiIds.getOrDefault(taxiCode, taxiIds.size());
-                taxiIds.put(taxiCode, taxiId);
-                LocalDateTime pickupTime = getPickupTime(row);
-                LocalDateTime dropoffTime = getDropoffTime(row);
-                Scalar waitingTime = getWaitingTime(row);
-                LocalDateTime submissionTimeDate = Objects.nonNull(waitingTime) ? LocalDateTimes.subtractFrom(pickupTime, waitingTime) : null;
-                Scalar durationCompute = Duration.between(pickupTime, dropoffTime);
-                Scalar durationDataset = getDuration(row);
-                String dataTripId = getTripId(row);
-                if (Objects.nonNull(dataTripId))
-                    tripId = dataTripId;
-                if (Scalars.lessEquals(Quantity.of(0.1, SI.SECOND), //
-                        durationDataset.subtract(durationCompute).abs()))
-                    System.err.println("Mismatch between duration recorded in data" + //
-                    "and computed duration," + //
-                    "computed duration using start and end time: " + //
-                    pickupTime + " --> " + dropoffTime + " != " + durationDataset);
-                TaxiTrip trip = TaxiTrip.of(//
-                        tripId, //
-                        Integer.toString(taxiId), //
-                        getPickupLocation(row), //
-                        getDropoffLocation(row), //
-                        getDistance(row), //
-                        submissionTimeDate, //
-                        pickupTime, //
-                        dropoffTime);
-                list.add(trip);
-            } catch (Exception exception) {
-                exception.printStackTrace();
-                unreadable.add(row.toString());
-            }
-        });
+        List<TaxiTrip> list = new ArrayList<>();
+        read(file, list::add);
+        return list;
+    }
+
+    /** @return all trips in @param file as {@link #getTrips(File)}, i.e., with identical order and ids,
+     *         the file is split into ranges of lines which are parsed by @param numThreads threads */
+    public List<TaxiTrip> getTrips(File file, int numThreads) throws IOException {
+        System.out.println("TaxiTripsReader, reading file with " + numThreads + " threads: " + file.getAbsolutePath());
+        CsvSchema schema = schema(file);
+        TripRowParser parser = compile(schema);
+        List<List<ParsedRow>> chunks = ChunkedLines.map(file, true, numThreads, line -> parse(parser, row(schema, line)));
+        List<TaxiTrip> list = new ArrayList<>();
+        int rowIndex = 0;
+        for (List<ParsedRow> chunk : chunks)
+            for (ParsedRow parsedRow : chunk)
+                accept(parsedRow, rowIndex++, list::add);
         return list;
     }
 
+    /** @return lazy {@link Stream} of the trips in @param file, rows are parsed as the stream
+     *         is consumed, the stream should be closed if it is not consumed completely */
+    public Stream<TaxiTrip> stream(File file) {
+        return PushStreams.of(consumer -> read(file, consumer));
+    }
+
+    /** parses the rows of @param file one after the other and hands the trips to @param consumer,
+     * no trips are retained, rows which cannot be parsed are saved as unreadable */
+    public void read(File file, Consumer<TaxiTrip> consumer) throws IOException {
+        System.out.println("TaxiTripsReader, reading file: " + file.getAbsolutePath());
+        CsvSchema schema = schema(file);
+        TripRowParser parser = compile(schema);
+        /** same decoding and line breaks as the parallel reader, see {@link ChunkedLines} */
+        int[] rowIndex = { 0 };
+        ChunkedLines.forEach(file, true, line -> accept(parse(parser, row(schema, line)), rowIndex[0]++, consumer));
+    }
+
+    private CsvSchema schema(File file) throws IOException {
+        return schema(ChunkedLines.firstLine(file));
+    }
+
+    private CsvSchema schema(String line) throws IOException {
+        if (Objects.isNull(line))
+            throw new IOException("file without header");
+        unreadable.add(line);
+        return new CsvSchema(line.split(Pattern.quote(delim), -1));
+    }
+
+    private CsvRow row(CsvSchema schema, String line) {
+        return CsvRow.of(schema, line, delim);
+    }
+
+    /** @return parser for the rows of a file with @param schema, called once per file. Subclasses
+     *         override this to resolve their columns to indices once and to parse every field once
+     *         per row, the default parses the rows with the getters, see {@link #parseByName(CsvRow, TripFields)} */
+    protected TripRowParser compile(CsvSchema schema) {
+        return this::parseByName;
+    }
+
+    /** fills @param fields from @param row with the getters of this reader, which access the columns
+     * of @param row by name */
+    protected final void parseByName(CsvRow row, TripFields fields) throws Exception {
+        fields.taxiCode = getTaxiId(row);
+        fields.pickupTime = getPickupTime(row);
+        fields.dropoffTime = getDropoffTime(row);
+        Scalar waitingTime = getWaitingTime(row);
+        fields.submissionTime = Objects.nonNull(waitingTime) ? LocalDateTimes.subtractFrom(fields.pickupTime, waitingTime) : null;
+        fields.duration = getDuration(row);
+        fields.tripId = getTripId(row);
+        fields.pickupLocation = getPickupLocation(row);
+        fields.dropoffLocation = getDropoffLocation(row);
+        fields.distance = getDistance(row);
+    }
+
+    /** parses @param row with @param parser, may be called concurrently */
+    private ParsedRow parse(TripRowParser parser, CsvRow row) {
+        ParsedRow parsedRow = new ParsedRow();
+        TripFields fields = parsedRow.fields;
+        try {
+            parser.parse(row, fields);
+            Scalar durationCompute = Duration.between(fields.pickupTime, fields.dropoffTime);
+            if (Scalars.lessEquals(Quantity.of(0.1, SI.SECOND), //
+                    fields.duration.subtract(durationCompute).abs()))
+                System.err.println("Mismatch between duration recorded in data" + //
+                "and computed duration," + //
+                "computed duration using start and end time: " + //
+                fields.pickupTime + " --> " + fields.dropoffTime + " != " + fields.duration);
+        } catch (Exception exception) {
+            parsedRow.exception = exception;
+            parsedRow.line = row.toString();
+        }
+        if (Objects.nonNull(fields.taxiCode))
+            fields.taxiCode = taxiCodes.computeIfAbsent(fields.taxiCode, code -> code);
+        return parsedRow;
+    }
+
+    /** assigns taxi and trip id to @param parsedRow, the row with @param rowIndex in the file, and
+     * hands the trip to @param consumer, must be called in the order of the rows */
+    private void accept(ParsedRow parsedRow, int rowIndex, Consumer<TaxiTrip> consumer) {
+        String tripId = "no_dat_id_" + Integer.toString(rowIndex);
+        if (rowIndex % 1000 == 0)
+            System.out.println("trips: " + tripId);
+        /** the taxi id is assigned as soon as the taxi code was read, even if the row is unreadable */
+        TripFields fields = parsedRow.fields;
+        int taxiId = -1;
+        if (Objects.nonNull(fields.taxiCode)) {
+            taxiId = taxiIds.getOrDefault(fields.taxiCode, taxiIds.size());
+            taxiIds.put(fields.taxiCode, taxiId);
+        }
+        if (Objects.nonNull(parsedRow.exception)) {
+            parsedRow.exception.printStackTrace();
+            unreadable.add(parsedRow.line);
+            return;
+        }
+        if (Objects.nonNull(fields.tripId))
+            tripId = fields.tripId;
+        TaxiTrip trip = TaxiTrip.of(//
+                tripId, //
+                Integer.toString(taxiId), //
+                fields.pickupLocation, //
+                fields.dropoffLocation, //
+                fields.distance, //
+                fields.submissionTime, //
+                fields.pickupTime, //
+                fields.dropoffTime);
+        consumer.accept(trip);
+    }
+
     public int getNumberOfTaxis() {
         return taxiIds.size();
     }
@@ -104,23 +201,23 @@ public abstract class TaxiTripsReader {
         }
     }
 
-    public abstract String getTripId(Row row);
+    public abstract String getTripId(CsvRow row);
 
-    public abstract String getTaxiId(Row row);
+    public abstract String getTaxiId(CsvRow row);
 
-    public abstract LocalDateTime getSubmissionTime(Row row) throws ParseException;
+    public abstract LocalDateTime getSubmissionTime(CsvRow row) throws ParseException;
 
-    public abstract LocalDateTime getPickupTime(Row row) throws ParseException;
+    public abstract LocalDateTime getPickupTime(CsvRow row) throws ParseException;
 
-    public abstract LocalDateTime getDropoffTime(Row row) throws ParseException;
+    public abstract LocalDateTime getDropoffTime(CsvRow row) throws ParseException;
 
-    public abstract Tensor getPickupLocation(Row row);
+    public abstract Tensor getPickupLocation(CsvRow row);
 
-    public abstract Tensor getDropoffLocation(Row row);
+    public abstract Tensor getDropoffLocation(CsvRow row);
 
-    public abstract Scalar getDuration(Row row);
+    public abstract Scalar getDuration(CsvRow row);
 
-    public abstract Scalar getDistance(Row row);
+    public abstract Scalar getDistance(CsvRow row);
 
-    public abstract Scalar getWaitingTime(Row row);
+    public abstract Scalar getWaitingTime(CsvRow row);
 }
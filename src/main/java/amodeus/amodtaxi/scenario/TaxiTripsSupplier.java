@@ -2,9 +2,15 @@ package amodeus.amodtaxi.scenario;
 
 import java.util.Collection;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import amodeus.amodeus.taxitrip.TaxiTrip;
 
 public interface TaxiTripsSupplier extends Supplier<Collection<TaxiTrip>> {
-    // ---
+
+    /** @return trips as {@link Stream}, suppliers reading files override this to provide the
+     *         trips lazily without collecting them first, the stream should be closed after use */
+    default Stream<TaxiTrip> stream() {
+        return get().stream();
+    }
 }
@@ -4,6 +4,7 @@ import java.io.File;
 import java.time.LocalDate;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.stream.Stream;
 
 import amodeus.amodeus.taxitrip.TaxiTrip;
 import amodeus.amodeus.util.math.GlobalAssert;
@@ -25,27 +26,40 @@ public class TaxiTripsSuppliers {
             @Override
             public Collection<TaxiTrip> get() {
                 try {
-                    /** folder for processing stored files, the folder tripData contains
-                     * .csv versions of all processing steps for faster debugging. */
-                    FileUtils.copyFileToDirectory(tripFile, targetDirectory);
-                    File newTripFile = new File(targetDirectory, tripFile.getName());
-                    System.out.println("NewTripFile: " + newTripFile.getAbsolutePath());
-                    GlobalAssert.that(newTripFile.isFile());
-
-                    /** initial formal modifications, e.g., replacing certain characters,
-                     * other modifications should be done in the third step */
-                    File preparedFile = modifier.modify(newTripFile);
-
-                    /** save unreadable trips for post-processing, checking */
-                    File unreadable = new File(preparedFile.getParentFile(), NamingConvention.similarTo(preparedFile).apply("unreadable"));
-                    tripsReader.saveUnreadable(unreadable);
-
-                    return tripsReader.getTrips(preparedFile);
+                    return tripsReader.getTrips(prepare(), Runtime.getRuntime().availableProcessors());
                 } catch (Exception e) {
                     e.printStackTrace();
                     return Collections.emptyList();
                 }
             }
+
+            @Override
+            public Stream<TaxiTrip> stream() {
+                try {
+                    return tripsReader.stream(prepare());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                    return Stream.empty();
+                }
+            }
+
+            private File prepare() throws Exception {
+                /** folder for processing stored files, the folder tripData contains
+                 * .csv versions of all processing steps for faster debugging. */
+                FileUtils.copyFileToDirectory(tripFile, targetDirectory);
+                File newTripFile = new File(targetDirectory, tripFile.getName());
+                System.out.println("NewTripFile: " + newTripFile.getAbsolutePath());
+                GlobalAssert.that(newTripFile.isFile());
+
+                /** initial formal modifications, e.g., replacing certain characters,
+                 * other modifications should be done in the third step */
+                File preparedFile = modifier.modify(newTripFile);
+
+                /** save unreadable trips for post-processing, checking */
+                File unreadable = new File(preparedFile.getParentFile(), NamingConvention.similarTo(preparedFile).apply("unreadable"));
+                tripsReader.saveUnreadable(unreadable);
+                return preparedFile;
+            }
         };
     }
 
@@ -0,0 +1,26 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.scenario;
+
+import java.time.LocalDateTime;
+
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.Tensor;
+
+/** Fields of a row of a trip file which are filled by a {@link TripRowParser}, the
+ * {@link TaxiTripsReader} creates the {@link TaxiTrip} from them. Fields which are
+ * not available in the data remain null. */
+public final class TripFields {
+    /** code of the taxi in the data, mapped to a numeric id by the reader */
+    public String taxiCode;
+    /** id of the trip in the data, null to use the position of the row */
+    public String tripId;
+    public LocalDateTime submissionTime;
+    public LocalDateTime pickupTime;
+    public LocalDateTime dropoffTime;
+    /** duration as recorded in the data */
+    public Scalar duration;
+    public Tensor pickupLocation;
+    public Tensor dropoffLocation;
+    public Scalar distance;
+}
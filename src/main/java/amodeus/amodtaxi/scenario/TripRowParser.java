@@ -0,0 +1,15 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.scenario;
+
+/** Parser of the rows of one trip file, created by {@link TaxiTripsReader#compile(CsvSchema)}
+ * with the column indices resolved. Implementations are called concurrently by the parallel
+ * reader and must not hold state of a row. */
+@FunctionalInterface
+public interface TripRowParser {
+
+    /** fills @param fields from @param row, every field should be parsed once, the taxi code
+     * first, such that it is known even if the remainder of the row cannot be parsed
+     * 
+     * @throws Exception if the row cannot be parsed */
+    void parse(CsvRow row, TripFields fields) throws Exception;
+}
@@ -4,7 +4,9 @@ package amodeus.amodtaxi.scenario.chicago;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Objects;
 
+import amodeus.amodeus.linkspeed.LinkSpeedDataContainer;
 import amodeus.amodeus.linkspeed.LinkSpeedUtils;
 import amodeus.amodeus.net.MatsimAmodeusDatabase;
 import amodeus.amodeus.options.ScenarioOptions;
@@ -26,6 +28,12 @@ import amodeus.amodtaxi.linkspeed.batch.GLPKLinOptDelayCalculator;
     ;
 
     public static void compute(File processingDir, File finalTripsFile) throws Exception {
+        compute(processingDir, finalTripsFile, null);
+    }
+
+    /** computes the link speeds as {@link #compute(File, File)}, the delay fit is warm started
+     * with the link speeds in @param previousLinkSpeeds, e.g., of the previous day, if not null */
+    public static void compute(File processingDir, File finalTripsFile, File previousLinkSpeeds) throws Exception {
         File linkSpeedsFile = new File(processingDir, ScenarioLabels.linkSpeedData);
 
         // load necessary files
@@ -43,7 +51,10 @@ import amodeus.amodtaxi.linkspeed.batch.GLPKLinOptDelayCalculator;
 
         // export link speed estimation
         // QuadTree<Link> qt = FastQuadTree.of(network);
-        TaxiLinkSpeedEstimator lsCalc = new FlowTimeInvLinkSpeed(trips, network, db, GLPKLinOptDelayCalculator.INSTANCE);
+        LinkSpeedDataContainer previous = Objects.isNull(previousLinkSpeeds) //
+                ? null //
+                : LinkSpeedUtils.loadLinkSpeedData(previousLinkSpeeds);
+        TaxiLinkSpeedEstimator lsCalc = new FlowTimeInvLinkSpeed(trips, network, db, GLPKLinOptDelayCalculator.INSTANCE, previous);
         LinkSpeedUtils.writeLinkSpeedData(linkSpeedsFile, lsCalc.getLsData());
     }
 }
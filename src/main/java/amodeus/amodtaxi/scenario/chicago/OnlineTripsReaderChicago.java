@@ -5,9 +5,11 @@ import java.text.ParseException;
 import java.time.LocalDateTime;
 
 import amodeus.amodeus.util.LocalDateTimes;
-import amodeus.amodeus.util.io.CsvReader.Row;
 import amodeus.amodeus.util.math.SI;
+import amodeus.amodtaxi.scenario.CsvRow;
+import amodeus.amodtaxi.scenario.CsvSchema;
 import amodeus.amodtaxi.scenario.TaxiTripsReader;
+import amodeus.amodtaxi.scenario.TripRowParser;
 import ch.ethz.idsc.tensor.Scalar;
 import ch.ethz.idsc.tensor.Tensor;
 import ch.ethz.idsc.tensor.Tensors;
@@ -19,58 +21,84 @@ public class OnlineTripsReaderChicago extends TaxiTripsReader {
         super(",");
     }
 
+    /** resolves the columns once per file, the start timestamp and the trip seconds are parsed
+     * once per row for the pickup time, the dropoff time and the duration, timestamps and
+     * coordinates are parsed from the line without intermediate strings */
     @Override
-    public String getTripId(Row row) {
+    protected TripRowParser compile(CsvSchema schema) {
+        int taxiId = schema.index("taxi_id");
+        int startTimestamp = schema.index("trip_start_timestamp");
+        int tripSeconds = schema.index("trip_seconds");
+        int pickupLongitude = schema.index("pickup_centroid_longitude");
+        int pickupLatitude = schema.index("pickup_centroid_latitude");
+        int dropoffLongitude = schema.index("dropoff_centroid_longitude");
+        int dropoffLatitude = schema.index("dropoff_centroid_latitude");
+        int tripMiles = schema.index("trip_miles");
+        return (row, fields) -> {
+            fields.taxiCode = row.get(taxiId);
+            LocalDateTime pickupTime = row.getTimestamp(startTimestamp, ScenarioConstants.onlineFormatter);
+            long seconds = row.getLong(tripSeconds);
+            fields.pickupTime = pickupTime;
+            fields.dropoffTime = pickupTime.plusSeconds(seconds);
+            fields.duration = Quantity.of(seconds, SI.SECOND);
+            fields.pickupLocation = Tensors.vector(row.getDouble(pickupLongitude), row.getDouble(pickupLatitude));
+            fields.dropoffLocation = Tensors.vector(row.getDouble(dropoffLongitude), row.getDouble(dropoffLatitude));
+            fields.distance = Quantity.of(row.getDouble(tripMiles) * ScenarioConstants.milesToM, SI.METER);
+        };
+    }
+
+    @Override
+    public String getTripId(CsvRow row) {
         // TODO Auto-generated method stub
         return null;
     }
 
     @Override
-    public final String getTaxiId(Row row) {
+    public final String getTaxiId(CsvRow row) {
         return row.get("taxi_id");
     }
 
     @Override
-    public LocalDateTime getPickupTime(Row line) throws ParseException {
+    public LocalDateTime getPickupTime(CsvRow line) throws ParseException {
         return LocalDateTime.parse(line.get("trip_start_timestamp"), ScenarioConstants.onlineFormatter);
     }
 
     @Override
-    public LocalDateTime getDropoffTime(Row line) throws ParseException {
+    public LocalDateTime getDropoffTime(CsvRow line) throws ParseException {
         return LocalDateTimes.addTo(getPickupTime(line), getDuration(line));
     }
 
     @Override
-    public Tensor getPickupLocation(Row line) {
+    public Tensor getPickupLocation(CsvRow line) {
         return Tensors.vector(Double.valueOf(line.get("pickup_centroid_longitude")), //
                 Double.valueOf(line.get("pickup_centroid_latitude")));
     }
 
     @Override
-    public Tensor getDropoffLocation(Row line) {
+    public Tensor getDropoffLocation(CsvRow line) {
         return Tensors.vector(Double.valueOf(line.get("dropoff_centroid_longitude")), //
                 Double.valueOf(line.get("dropoff_centroid_latitude")));
     }
 
     @Override
-    public Scalar getDuration(Row line) {
+    public Scalar getDuration(CsvRow line) {
         return Quantity.of(Long.valueOf(line.get("trip_seconds")), SI.SECOND);
     }
 
     @Override
-    public final Scalar getDistance(Row row) {
+    public final Scalar getDistance(CsvRow row) {
         return Quantity.of(Double.valueOf(row.get("trip_miles"))//
                 * ScenarioConstants.milesToM, SI.METER);
     }
 
     @Override
-    public final Scalar getWaitingTime(Row row) {
+    public final Scalar getWaitingTime(CsvRow row) {
         // not available from data
         return null;
     }
 
     @Override
-    public LocalDateTime getSubmissionTime(Row row) throws ParseException {
+    public LocalDateTime getSubmissionTime(CsvRow row) throws ParseException {
         // not available from data
         return null;
     }
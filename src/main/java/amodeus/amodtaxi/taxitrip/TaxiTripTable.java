@@ -0,0 +1,203 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.taxitrip;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import amodeus.amodeus.util.math.SI;
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.qty.Quantity;
+
+/** Columnar storage of {@link TaxiTrip}s: every attribute is stored in a primitive array, the
+ * taxi ids are interned, such that a trip requires about 100 bytes instead of the objects of a
+ * {@link TaxiTrip}, i.e., tensors for the locations, quantities and timestamps.
+ *
+ * Times are stored in seconds, the pickup time as epoch seconds of the {@link LocalDateTime}
+ * at {@link ZoneOffset#UTC}, fractions of seconds are dropped. Distances are stored in [m],
+ * the locations as given by the trips. A {@link TaxiTrip} is created on access with
+ * {@link #get(int)} or {@link #stream()}, the trips of the table are not retained. */
+public final class TaxiTripTable {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** @return table of all @param taxiTrips in order */
+    public static TaxiTripTable of(Iterable<TaxiTrip> taxiTrips) {
+        TaxiTripTable taxiTripTable = new TaxiTripTable();
+        taxiTrips.forEach(taxiTripTable::add);
+        return taxiTripTable;
+    }
+
+    /** @return table of all trips of @param stream in order */
+    public static TaxiTripTable of(Stream<TaxiTrip> stream) {
+        TaxiTripTable taxiTripTable = new TaxiTripTable();
+        stream.forEachOrdered(taxiTripTable::add);
+        return taxiTripTable;
+    }
+
+    // ---
+    private final Map<String, Integer> taxiIndices = new HashMap<>();
+    private final List<String> taxiIds = new ArrayList<>();
+    private int size = 0;
+    private String[] localIds = new String[INITIAL_CAPACITY];
+    private int[] taxiIndex = new int[INITIAL_CAPACITY];
+    private double[] pickupLon = new double[INITIAL_CAPACITY];
+    private double[] pickupLat = new double[INITIAL_CAPACITY];
+    private double[] dropoffLon = new double[INITIAL_CAPACITY];
+    private double[] dropoffLat = new double[INITIAL_CAPACITY];
+    private int[] pickupTime = new int[INITIAL_CAPACITY];
+    /** NaN if not available */
+    private float[] waitTime = new float[INITIAL_CAPACITY];
+    private float[] driveTime = new float[INITIAL_CAPACITY];
+    /** NaN if not available */
+    private float[] distance = new float[INITIAL_CAPACITY];
+
+    /** appends @param taxiTrip */
+    public void add(TaxiTrip taxiTrip) {
+        int row = append(taxiTrip.localId, taxiTrip.taxiId);
+        pickupLon[row] = coordinate(taxiTrip.pickupLoc, 0);
+        pickupLat[row] = coordinate(taxiTrip.pickupLoc, 1);
+        dropoffLon[row] = coordinate(taxiTrip.dropoffLoc, 0);
+        dropoffLat[row] = coordinate(taxiTrip.dropoffLoc, 1);
+        pickupTime[row] = Math.toIntExact(taxiTrip.pickupTimeDate.toEpochSecond(ZoneOffset.UTC));
+        waitTime[row] = value(taxiTrip.waitTime);
+        driveTime[row] = value(taxiTrip.driveTime);
+        distance[row] = value(taxiTrip.distance);
+    }
+
+    /** appends the trip in @param row of @param taxiTripTable without creating a {@link TaxiTrip} */
+    public void add(TaxiTripTable taxiTripTable, int row) {
+        int index = append(taxiTripTable.localIds[row], taxiTripTable.taxiId(row));
+        pickupLon[index] = taxiTripTable.pickupLon[row];
+        pickupLat[index] = taxiTripTable.pickupLat[row];
+        dropoffLon[index] = taxiTripTable.dropoffLon[row];
+        dropoffLat[index] = taxiTripTable.dropoffLat[row];
+        pickupTime[index] = taxiTripTable.pickupTime[row];
+        waitTime[index] = taxiTripTable.waitTime[row];
+        driveTime[index] = taxiTripTable.driveTime[row];
+        distance[index] = taxiTripTable.distance[row];
+    }
+
+    /** @return index of the row appended for @param localId and @param taxiId */
+    private int append(String localId, String taxiId) {
+        if (size == localIds.length)
+            grow(2 * size);
+        localIds[size] = localId;
+        Integer index = taxiIndices.get(taxiId);
+        if (Objects.isNull(index)) {
+            index = taxiIds.size();
+            taxiIds.add(taxiId);
+            taxiIndices.put(taxiId, index);
+        }
+        taxiIndex[size] = index;
+        return size++;
+    }
+
+    private void grow(int capacity) {
+        localIds = Arrays.copyOf(localIds, capacity);
+        taxiIndex = Arrays.copyOf(taxiIndex, capacity);
+        pickupLon = Arrays.copyOf(pickupLon, capacity);
+        pickupLat = Arrays.copyOf(pickupLat, capacity);
+        dropoffLon = Arrays.copyOf(dropoffLon, capacity);
+        dropoffLat = Arrays.copyOf(dropoffLat, capacity);
+        pickupTime = Arrays.copyOf(pickupTime, capacity);
+        waitTime = Arrays.copyOf(waitTime, capacity);
+        driveTime = Arrays.copyOf(driveTime, capacity);
+        distance = Arrays.copyOf(distance, capacity);
+    }
+
+    /** @return number of trips */
+    public int size() {
+        return size;
+    }
+
+    /** @return number of distinct taxis */
+    public int numberOfTaxis() {
+        return taxiIds.size();
+    }
+
+    /** @return trip in @param row, created on every call */
+    public TaxiTrip get(int row) {
+        return TaxiTrip.of( //
+                localIds[row], //
+                taxiId(row), //
+                Tensors.vector(pickupLon[row], pickupLat[row]), //
+                Tensors.vector(dropoffLon[row], dropoffLat[row]), //
+                Float.isNaN(distance[row]) ? null : Quantity.of((double) distance[row], SI.METER), //
+                pickupTimeDate(row), //
+                Float.isNaN(waitTime[row]) ? null : Quantity.of((double) waitTime[row], SI.SECOND), //
+                Quantity.of((double) driveTime[row], SI.SECOND));
+    }
+
+    /** @return trips in order, created as the stream is consumed */
+    public Stream<TaxiTrip> stream() {
+        return IntStream.range(0, size).mapToObj(this::get);
+    }
+
+    public String localId(int row) {
+        return localIds[row];
+    }
+
+    /** @return interned taxi id of @param row */
+    public String taxiId(int row) {
+        return taxiIds.get(taxiIndex[row]);
+    }
+
+    public double pickupLon(int row) {
+        return pickupLon[row];
+    }
+
+    public double pickupLat(int row) {
+        return pickupLat[row];
+    }
+
+    public double dropoffLon(int row) {
+        return dropoffLon[row];
+    }
+
+    public double dropoffLat(int row) {
+        return dropoffLat[row];
+    }
+
+    /** @return pickup time of @param row in epoch seconds */
+    public int pickupTime(int row) {
+        return pickupTime[row];
+    }
+
+    public LocalDateTime pickupTimeDate(int row) {
+        return LocalDateTime.ofEpochSecond(pickupTime[row], 0, ZoneOffset.UTC);
+    }
+
+    /** @return wait time of @param row in [s], NaN if not available */
+    public float waitTime(int row) {
+        return waitTime[row];
+    }
+
+    /** @return drive time of @param row in [s] */
+    public float driveTime(int row) {
+        return driveTime[row];
+    }
+
+    /** @return distance of @param row in [m], NaN if not available */
+    public float distance(int row) {
+        return distance[row];
+    }
+
+    private static double coordinate(Tensor location, int index) {
+        return location.Get(index).number().doubleValue();
+    }
+
+    /** @return magnitude of @param scalar in SI units, NaN for null */
+    private static float value(Scalar scalar) {
+        return Objects.isNull(scalar) ? Float.NaN : scalar.number().floatValue();
+    }
+}
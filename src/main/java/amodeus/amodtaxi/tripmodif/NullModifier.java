@@ -5,6 +5,8 @@ import java.io.File;
 
 import org.apache.commons.io.FileUtils;
 
+import amodeus.amodtaxi.taxitrip.TaxiTripTable;
+
 public enum NullModifier implements TaxiDataModifier {
     INSTANCE;
 
@@ -15,4 +17,9 @@ public enum NullModifier implements TaxiDataModifier {
         FileUtils.copyFile(taxiData, outFile);
         return outFile;
     }
+
+    @Override
+    public TaxiTripTable modify(TaxiTripTable taxiTripTable) {
+        return taxiTripTable;
+    }
 }
@@ -3,6 +3,9 @@ package amodeus.amodtaxi.tripmodif;
 
 import java.io.File;
 
+import amodeus.amodeus.taxitrip.ExportTaxiTrips;
+import amodeus.amodeus.taxitrip.ImportTaxiTrips;
+import amodeus.amodtaxi.taxitrip.TaxiTripTable;
 import amodeus.amodtaxi.tripfilter.TaxiTripFilterCollection;
 
 @FunctionalInterface
@@ -20,4 +23,24 @@ public interface TaxiDataModifier {
      * @throws Exception */
     File modify(File taxiData) throws Exception;
 
+    /** @return table of the trips of @param taxiTripTable with the modifications of {@link #modify(File)},
+     *         the default writes the trips to a temporary file, modifies it and reads the result,
+     *         modifiers of the trip content override this method to work on the table directly
+     * 
+     * @throws Exception */
+    default TaxiTripTable modify(TaxiTripTable taxiTripTable) throws Exception {
+        File taxiData = File.createTempFile("taxiTrips", ".csv");
+        try {
+            ExportTaxiTrips.toFile(taxiTripTable.stream(), taxiData);
+            File modified = modify(taxiData);
+            try {
+                return TaxiTripTable.of(ImportTaxiTrips.fromFile(modified));
+            } finally {
+                modified.delete();
+            }
+        } finally {
+            taxiData.delete();
+        }
+    }
+
 }
@@ -4,10 +4,13 @@ package amodeus.amodtaxi.tripmodif;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 import amodeus.amodeus.taxitrip.ExportTaxiTrips;
 import amodeus.amodeus.taxitrip.ImportTaxiTrips;
 import amodeus.amodeus.taxitrip.TaxiTrip;
+import amodeus.amodtaxi.taxitrip.TaxiTripTable;
 import amodeus.amodtaxi.util.NamingConvention;
 
 public class TaxiDataModifierCollection implements TaxiDataModifier {
@@ -21,22 +24,30 @@ public class TaxiDataModifierCollection implements TaxiDataModifier {
     @Override // from TaxiDataModifier
     public final File modify(File taxiData) throws Exception {
         /** gather all original trips */
-        List<TaxiTrip> originals = new ArrayList<>(ImportTaxiTrips.fromFile(taxiData));
+        List<TaxiTrip> originals = ImportTaxiTrips.fromFile(taxiData);
 
+        /** let modifiers do modifications on each trip while writing, no further copies are made */
+        File outFile = new File(taxiData.getParentFile(), NamingConvention.similarTo(taxiData).apply("modified"));
+        ExportTaxiTrips.toFile(modified(originals::stream), outFile);
+        return outFile;
+    }
+
+    @Override // from TaxiDataModifier
+    public final TaxiTripTable modify(TaxiTripTable taxiTripTable) {
+        return TaxiTripTable.of(modified(taxiTripTable::stream));
+    }
+
+    /** @return trips of @param originals modified by all modifiers, the trips are streamed twice */
+    private Stream<TaxiTrip> modified(Supplier<Stream<TaxiTrip>> originals) {
         /** notify about all the taxi trips */
-        originals.forEach(taxiTrip -> //
+        originals.get().forEach(taxiTrip -> //
                 modifiers.forEach(modifier -> modifier.notify(taxiTrip)));
 
-        /** let modifiers do modifications on each trip, then return */
-        List<TaxiTrip> modified = new ArrayList<>();
-        originals.forEach(taxiTrip -> {
+        return originals.get().map(taxiTrip -> {
             TaxiTrip changed = taxiTrip;
             for (TripModifier tripModifier : modifiers)
                 changed = tripModifier.modify(changed);
-            modified.add(changed);
+            return changed;
         });
-        File outFile = new File(taxiData.getParentFile(), NamingConvention.similarTo(taxiData).apply("modified"));
-        ExportTaxiTrips.toFile(modified.stream(), outFile);
-        return outFile;
     }
 }
@@ -0,0 +1,161 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import amodeus.amodeus.util.math.GlobalAssert;
+
+/** Processes the lines of a large text file in parallel: the file is split into byte ranges
+ * which start and end on line boundaries, every range is memory-mapped, decoded and its lines
+ * are processed on a worker pool. The results are returned per range in the order of the
+ * file, i.e., the outcome is the same as processing the lines sequentially with
+ * {@link #forEach(File, boolean, Consumer)}. Files are decoded as UTF-8, lines end with \n
+ * or \r\n, a lone \r is not a line break. Empty lines are skipped. */
+public enum ChunkedLines {
+    ;
+    /** nominal size of a range in bytes */
+    private static final long CHUNK_SIZE = 8L << 20;
+    private static final int SCAN_SIZE = 4096;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** @return results of @param function for all lines of @param file in order of the file, one list
+     *         per byte range, the first line is skipped if @param skipFirstLine, e.g., a header,
+     *         the ranges are processed by @param numThreads threads */
+    public static <T> List<List<T>> map(File file, boolean skipFirstLine, int numThreads, Function<String, T> function) throws IOException {
+        return map(file, skipFirstLine, numThreads, CHUNK_SIZE, function);
+    }
+
+    /** @return results as {@link #map(File, boolean, int, Function)} with ranges of nominal size @param chunkSize bytes */
+    /* package */ static <T> List<List<T>> map(File file, boolean skipFirstLine, int numThreads, long chunkSize, Function<String, T> function) throws IOException {
+        GlobalAssert.that(0 < numThreads);
+        GlobalAssert.that(0 < chunkSize);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            List<long[]> ranges = ranges(channel, skipFirstLine ? nextLineStart(channel, 0) : 0, chunkSize);
+            ExecutorService executorService = Executors.newFixedThreadPool(Math.min(numThreads, Math.max(1, ranges.size())));
+            try {
+                List<Future<List<T>>> futures = new ArrayList<>();
+                for (long[] range : ranges)
+                    futures.add(executorService.submit(() -> lines(channel, range[0], range[1], function)));
+                List<List<T>> results = new ArrayList<>();
+                for (Future<List<T>> future : futures)
+                    results.add(future.get());
+                return results;
+            } catch (InterruptedException | ExecutionException exception) {
+                throw new IOException(exception);
+            } finally {
+                executorService.shutdown();
+            }
+        }
+    }
+
+    /** hands all lines of @param file to @param consumer in order of the file with the same rules as
+     * {@link #map(File, boolean, int, Function)}, the first line is skipped if @param skipFirstLine */
+    public static void forEach(File file, boolean skipFirstLine, Consumer<String> consumer) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            char[] buffer = new char[BUFFER_SIZE];
+            StringBuilder line = new StringBuilder();
+            boolean skip = skipFirstLine;
+            int read;
+            while (0 <= (read = reader.read(buffer)))
+                for (int i = 0; i < read; ++i)
+                    if (buffer[i] == '\n') {
+                        accept(line, skip, consumer);
+                        skip = false;
+                        line.setLength(0);
+                    } else
+                        line.append(buffer[i]);
+            accept(line, skip, consumer);
+        }
+    }
+
+    /** @return first line of @param file without line break, null if the file is empty */
+    public static String firstLine(File file) throws IOException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while (0 <= (c = reader.read()) && c != '\n')
+                line.append((char) c);
+            if (c < 0 && line.length() == 0)
+                return null;
+            return withoutCarriageReturn(line);
+        }
+    }
+
+    private static void accept(StringBuilder line, boolean skip, Consumer<String> consumer) {
+        if (!skip && 0 < line.length()) {
+            String string = withoutCarriageReturn(line);
+            if (!string.isEmpty())
+                consumer.accept(string);
+        }
+    }
+
+    private static String withoutCarriageReturn(StringBuilder line) {
+        int length = line.length();
+        return 0 < length && line.charAt(length - 1) == '\r' //
+                ? line.substring(0, length - 1)
+                : line.toString();
+    }
+
+    /** @return ranges [start, end) which cover the bytes from @param start to the end of @param channel,
+     *         each of at least @param chunkSize bytes except the last one and ending after a line break */
+    /* package */ static List<long[]> ranges(FileChannel channel, long start, long chunkSize) throws IOException {
+        long size = channel.size();
+        List<long[]> ranges = new ArrayList<>();
+        while (start < size) {
+            long end = Math.min(size, start + chunkSize);
+            if (end < size)
+                end = nextLineStart(channel, end - 1);
+            ranges.add(new long[] { start, end });
+            start = end;
+        }
+        return ranges;
+    }
+
+    /** @return position after the first line break at or after @param position, size of the file if there is none */
+    /* package */ static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer byteBuffer = ByteBuffer.allocate(SCAN_SIZE);
+        while (position < channel.size()) {
+            byteBuffer.clear();
+            int read = channel.read(byteBuffer, position);
+            if (read <= 0)
+                break;
+            for (int i = 0; i < read; ++i)
+                if (byteBuffer.get(i) == '\n')
+                    return position + i + 1;
+            position += read;
+        }
+        return channel.size();
+    }
+
+    private static <T> List<T> lines(FileChannel channel, long start, long end, Function<String, T> function) throws IOException {
+        CharBuffer charBuffer = StandardCharsets.UTF_8.decode(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        List<T> results = new ArrayList<>();
+        int lineStart = 0;
+        int length = charBuffer.limit();
+        for (int i = 0; i <= length; ++i)
+            if (i == length || charBuffer.get(i) == '\n') {
+                int lineEnd = 0 < i && lineStart < i && charBuffer.get(i - 1) == '\r' ? i - 1 : i;
+                if (lineStart < lineEnd)
+                    results.add(function.apply(charBuffer.subSequence(lineStart, lineEnd).toString()));
+                lineStart = i + 1;
+            }
+        return results;
+    }
+}
@@ -0,0 +1,104 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.util;
+
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.Month;
+import java.time.Year;
+import java.time.format.DateTimeFormatter;
+
+/** Parses timestamps and numbers of trip files directly from a range of characters, e.g., a field
+ * within a line, without creating intermediate strings. Only the common layouts are handled on the
+ * fast path, every other input is handed to the parsing of the JDK, such that the results are the
+ * same as with {@link LocalDateTime#parse(CharSequence, DateTimeFormatter)}, {@link Double#parseDouble(String)}
+ * and {@link Long#parseLong(String)}. */
+public enum FixedFormats {
+    ;
+    /** yyyy-MM-dd'T'HH:mm:ss.SSS */
+    private static final int TIMESTAMP_LENGTH = 23;
+    /** exact powers of ten as double */
+    private static final double[] POWERS_OF_TEN = { //
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, //
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /** @return timestamp of the characters of @param chars from @param start to @param end, exclusive,
+     *         in the layout yyyy-MM-dd'T'HH:mm:ss.SSS, characters of any other layout are parsed with
+     *         @param fallback, which has to parse the layout above to the same timestamp
+     * @throws DateTimeException if the characters cannot be parsed */
+    public static LocalDateTime parseTimestamp(CharSequence chars, int start, int end, DateTimeFormatter fallback) {
+        if (end - start == TIMESTAMP_LENGTH //
+                && chars.charAt(start + 4) == '-' && chars.charAt(start + 7) == '-' //
+                && chars.charAt(start + 10) == 'T' //
+                && chars.charAt(start + 13) == ':' && chars.charAt(start + 16) == ':' //
+                && chars.charAt(start + 19) == '.') {
+            int year = digits(chars, start, 4);
+            int month = digits(chars, start + 5, 2);
+            int day = digits(chars, start + 8, 2);
+            int hour = digits(chars, start + 11, 2);
+            int minute = digits(chars, start + 14, 2);
+            int second = digits(chars, start + 17, 2);
+            int millis = digits(chars, start + 20, 3);
+            /** out of range values, e.g., day 31 of a month with 30 days, are resolved by the formatter */
+            if (0 <= (year | month | day | hour | minute | second | millis) //
+                    && 1 <= year && 1 <= month && month <= 12 //
+                    && 1 <= day && day <= Month.of(month).length(Year.isLeap(year)) //
+                    && hour < 24 && minute < 60 && second < 60)
+                return LocalDateTime.of(year, month, day, hour, minute, second, millis * 1_000_000);
+        }
+        return LocalDateTime.parse(chars.subSequence(start, end), fallback);
+    }
+
+    /** @return value of the characters of @param chars from @param start to @param end, exclusive,
+     *         decimal numbers with up to 15 significant digits and without exponent are parsed
+     *         directly, e.g., coordinates such as -87.6241339
+     * @throws NumberFormatException if the characters are not a number */
+    public static double parseDouble(CharSequence chars, int start, int end) {
+        int index = start;
+        boolean negative = false;
+        if (index < end && (chars.charAt(index) == '-' || chars.charAt(index) == '+'))
+            negative = chars.charAt(index++) == '-';
+        long mantissa = 0;
+        int fractionDigits = 0;
+        int digits = 0;
+        boolean point = false;
+        for (; index < end; ++index) {
+            char c = chars.charAt(index);
+            if ('0' <= c && c <= '9') {
+                mantissa = mantissa * 10 + (c - '0');
+                ++digits;
+                if (point)
+                    ++fractionDigits;
+            } else //
+            if (c == '.' && !point)
+                point = true;
+            else
+                break;
+        }
+        /** mantissa and power of ten are exact as double, hence the quotient is rounded correctly
+         * and equals the result of Double.parseDouble */
+        if (index == end && 0 < digits && digits <= 15) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(chars.subSequence(start, end).toString());
+    }
+
+    /** @return value of the characters of @param chars from @param start to @param end, exclusive
+     * @throws NumberFormatException if the characters are not an integer */
+    public static long parseLong(CharSequence chars, int start, int end) {
+        return Long.parseLong(chars, start, end, 10);
+    }
+
+    /** @return value of @param length decimal digits at @param start of @param chars, negative if
+     *         any of the characters is not a digit */
+    private static int digits(CharSequence chars, int start, int length) {
+        int value = 0;
+        for (int index = start; index < start + length; ++index) {
+            int digit = chars.charAt(index) - '0';
+            if (digit < 0 || 9 < digit)
+                return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,111 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.util;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/** Turns a push-style source, e.g., a file reader which hands every parsed element to a
+ * {@link Consumer}, into a lazy {@link Stream}. The source runs on a separate thread once the
+ * stream is consumed and blocks while the bounded buffer is full, so at most the buffer capacity
+ * of elements is held in memory. Closing the stream stops the source. */
+public enum PushStreams {
+    ;
+
+    @FunctionalInterface
+    public interface Source<T> {
+        /** hands all elements to the @param consumer in order */
+        void forEach(Consumer<T> consumer) throws Exception;
+    }
+
+    private static final int CAPACITY = 1024;
+    private static final Object END = new Object();
+
+    /** @return lazy stream of the elements of @param source, the stream should be closed if it is
+     *         not consumed completely */
+    public static <T> Stream<T> of(Source<T> source) {
+        Handoff<T> handoff = new Handoff<>(source);
+        return StreamSupport.stream(handoff, false).onClose(handoff::close);
+    }
+
+    private static class Interrupted extends RuntimeException {
+        private Interrupted(InterruptedException interruptedException) {
+            super(interruptedException);
+        }
+    }
+
+    private static class Handoff<T> extends Spliterators.AbstractSpliterator<T> {
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(CAPACITY);
+        private final Source<T> source;
+        private Thread thread = null;
+        private volatile Exception failure = null;
+        private boolean done = false;
+
+        private Handoff(Source<T> source) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.source = source;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (done)
+                return false;
+            if (thread == null)
+                start();
+            Object element;
+            try {
+                element = queue.take();
+            } catch (InterruptedException interruptedException) {
+                close();
+                throw new Interrupted(interruptedException);
+            }
+            if (element == END) {
+                done = true;
+                if (failure != null)
+                    throw new RuntimeException(failure);
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            T t = (T) element;
+            action.accept(t);
+            return true;
+        }
+
+        private void start() {
+            thread = new Thread(() -> {
+                try {
+                    source.forEach(element -> put(element));
+                } catch (Interrupted interrupted) {
+                    return;
+                } catch (Exception exception) {
+                    failure = exception;
+                }
+                try {
+                    queue.put(END);
+                } catch (InterruptedException interruptedException) {
+                    // stream was closed
+                }
+            }, "PushStreams");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void put(Object element) {
+            try {
+                queue.put(element);
+            } catch (InterruptedException interruptedException) {
+                throw new Interrupted(interruptedException);
+            }
+        }
+
+        private void close() {
+            done = true;
+            if (thread != null)
+                thread.interrupt();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.alg.Array;
+import junit.framework.TestCase;
+
+public class ADMMDelayCalculatorTest extends TestCase {
+    public void testSolveInitialDelete() {
+        /** instance of SolveInitialDelete, consistent deviations */
+        Tensor flowMatrix = Tensors.fromString("{{1,1,0,0},{0,0,1,1},{0,0,1,1}}");
+        Tensor deviation = Tensors.fromString("{{0.3},{0.4},{0.4}}");
+        compare(SparseFlowMatrix.of(flowMatrix), deviation);
+        assertEquals(0, l1(SparseFlowMatrix.of(flowMatrix), ADMMDelayCalculator.INSTANCE.compute(flowMatrix, deviation), deviation), 1e-5);
+    }
+
+    public void testInconsistent() {
+        /** same path with different deviations and a negative deviation */
+        Tensor flowMatrix = Tensors.fromString("{{1,1,0},{1,1,0},{0,0,1}}");
+        Tensor deviation = Tensors.fromString("{{0.3},{0.5},{-0.2}}");
+        compare(SparseFlowMatrix.of(flowMatrix), deviation);
+        assertEquals(0.4, l1(SparseFlowMatrix.of(flowMatrix), ADMMDelayCalculator.INSTANCE.compute(flowMatrix, deviation), deviation), 1e-5);
+    }
+
+    public void testRandom() {
+        Random random = new Random(3);
+        int numRoads = 30;
+        int numTrips = 80;
+        List<int[]> rows = new ArrayList<>();
+        Tensor deviation = Array.zeros(numTrips, 1);
+        for (int i = 0; i < numTrips; ++i) {
+            int length = 1 + random.nextInt(5);
+            int start = random.nextInt(numRoads - length);
+            int[] row = new int[length];
+            for (int k = 0; k < length; ++k)
+                row[k] = start + k;
+            rows.add(row);
+            deviation.set(RealScalar.of(2 + 3 * random.nextGaussian()), i, 0);
+        }
+        compare(SparseFlowMatrix.ofRows(numRoads, rows), deviation);
+    }
+
+    /** the solutions may differ as the L1 fit is not unique, the objective must be the same */
+    private static void compare(SparseFlowMatrix flowMatrix, Tensor deviation) {
+        Tensor admm = ADMMDelayCalculator.INSTANCE.compute(flowMatrix, deviation);
+        Tensor glpk = GLPKLinOptDelayCalculator.INSTANCE.compute(flowMatrix, deviation);
+        assertEquals(flowMatrix.cols(), admm.length());
+        admm.flatten(-1).map(Scalar.class::cast).forEach(delay -> assertTrue(0 <= delay.number().doubleValue()));
+        double objective = l1(flowMatrix, glpk, deviation);
+        assertEquals(objective, l1(flowMatrix, admm, deviation), 1e-4 * Math.max(1, objective));
+    }
+
+    private static double l1(SparseFlowMatrix flowMatrix, Tensor delays, Tensor deviation) {
+        return flowMatrix.dot(delays).subtract(deviation).flatten(-1).map(Scalar.class::cast) //
+                .mapToDouble(s -> Math.abs(s.number().doubleValue())).sum();
+    }
+}
@@ -0,0 +1,61 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+import junit.framework.TestCase;
+
+public class DenseLinkSpeedsTest extends TestCase {
+    public void testScale() {
+        Network network = GridNetworks.grid(3, new Random(1));
+        DenseLinkSpeeds speeds = new DenseLinkSpeeds(network, 900);
+        Link link = network.getLinks().values().iterator().next();
+        double freeSpeed = link.getFreespeed();
+        assertEquals(freeSpeed, speeds.getSpeed(link, 0), 0.0);
+        speeds.scale(link, 0.5, false);
+        assertEquals(0.5 * freeSpeed, speeds.getSpeed(link, 0), 1e-12);
+        assertEquals(0.5 * freeSpeed, speeds.getSpeed(link, 200000), 1e-12);
+        assertEquals(1, speeds.version());
+        /** increases beyond the free speed are ignored unless allowed */
+        speeds.scale(link, 3, false);
+        assertEquals(0.5 * freeSpeed, speeds.getSpeed(link, 0), 1e-12);
+        assertEquals(1, speeds.version());
+        speeds.scale(link, 3, true);
+        assertEquals(1.5 * freeSpeed, speeds.getSpeed(link, 0), 1e-12);
+        assertEquals(2, speeds.version());
+    }
+
+    public void testKeepsShortestPath() {
+        Network network = GridNetworks.grid(3, new Random(2));
+        DenseLinkSpeeds speeds = new DenseLinkSpeeds(network, 900);
+        List<Link> links = new ArrayList<>(network.getLinks().values());
+        Link onPath = links.get(0);
+        Link offPath = links.get(1);
+        int[] pathLinks = { speeds.indexOf(onPath) };
+
+        /** slower links off the path keep the path */
+        long version = speeds.version();
+        speeds.scale(offPath, 0.8, false);
+        assertTrue(speeds.keepsShortestPath(version, pathLinks));
+
+        /** any change on the path invalidates it, also a faster link */
+        speeds.scale(onPath, 0.8, false);
+        assertFalse(speeds.keepsShortestPath(version, pathLinks));
+        version = speeds.version();
+        speeds.scale(onPath, 1.1, false);
+        assertFalse(speeds.keepsShortestPath(version, pathLinks));
+
+        /** faster links off the path invalidate it */
+        version = speeds.version();
+        speeds.scale(offPath, 1.1, false);
+        assertFalse(speeds.keepsShortestPath(version, pathLinks));
+
+        /** no change since the computation */
+        assertTrue(speeds.keepsShortestPath(speeds.version(), pathLinks));
+    }
+}
@@ -0,0 +1,84 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import amodeus.amodeus.net.MatsimAmodeusDatabase;
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import amodeus.amodeus.util.math.SI;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+
+import amodeus.amodtaxi.scenario.chicago.ChicagoReferenceFrames;
+import ch.ethz.idsc.tensor.Tensor;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.qty.Quantity;
+
+/** Small grid networks in the {@link ChicagoReferenceFrames#CHICAGO} frame with random free speeds
+ * and trips between their nodes for the tests of the iterative link speed estimation. */
+/* package */ enum GridNetworks {
+    ;
+    private static final double SPACING = 1000;
+    private static final LocalDateTime START = LocalDateTime.of(2018, 1, 22, 8, 0);
+
+    /** @return grid of @param size x @param size nodes with links in both directions between
+     *         neighboring nodes, the free speeds are drawn from @param random */
+    public static Network grid(int size, Random random) {
+        Network network = NetworkUtils.createNetwork();
+        Coord origin = ChicagoReferenceFrames.CHICAGO.coords_fromWGS84().transform(new Coord(-87.65, 41.88));
+        Node[][] nodes = new Node[size][size];
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j)
+                nodes[i][j] = NetworkUtils.createAndAddNode(network, Id.createNodeId(i + "_" + j), //
+                        new Coord(origin.getX() + i * SPACING, origin.getY() + j * SPACING));
+        for (int i = 0; i < size; ++i)
+            for (int j = 0; j < size; ++j) {
+                if (i + 1 < size)
+                    addLinks(network, nodes[i][j], nodes[i + 1][j], random);
+                if (j + 1 < size)
+                    addLinks(network, nodes[i][j], nodes[i][j + 1], random);
+            }
+        return network;
+    }
+
+    private static void addLinks(Network network, Node node1, Node node2, Random random) {
+        NetworkUtils.createAndAddLink(network, Id.createLinkId(node1.getId() + "-" + node2.getId()), //
+                node1, node2, SPACING, 8 + 6 * random.nextDouble(), 1000, 1);
+        NetworkUtils.createAndAddLink(network, Id.createLinkId(node2.getId() + "-" + node1.getId()), //
+                node2, node1, SPACING, 8 + 6 * random.nextDouble(), 1000, 1);
+    }
+
+    /** @return database of @param network in the {@link ChicagoReferenceFrames#CHICAGO} frame */
+    public static MatsimAmodeusDatabase database(Network network) {
+        return MatsimAmodeusDatabase.initialize(network, ChicagoReferenceFrames.CHICAGO);
+    }
+
+    /** @return @param numTrips trips between distinct random nodes of @param network picked up
+     *         within two hours, the recorded drive times are drawn from @param random */
+    public static List<TaxiTrip> trips(Network network, int numTrips, Random random) {
+        List<Node> nodes = new ArrayList<>(network.getNodes().values());
+        List<TaxiTrip> trips = new ArrayList<>();
+        for (int i = 0; i < numTrips; ++i) {
+            Node from = nodes.get(random.nextInt(nodes.size()));
+            Node to = nodes.get(random.nextInt(nodes.size()));
+            while (to == from)
+                to = nodes.get(random.nextInt(nodes.size()));
+            LocalDateTime pickup = START.plusSeconds(random.nextInt(7200));
+            trips.add(TaxiTrip.of(Integer.toString(i), "taxi" + random.nextInt(5), wgs84(from), wgs84(to), //
+                    Quantity.of(NetworkUtils.getEuclideanDistance(from.getCoord(), to.getCoord()), SI.METER), //
+                    pickup, pickup, pickup.plusSeconds(300 + random.nextInt(1200))));
+        }
+        return trips;
+    }
+
+    private static Tensor wgs84(Node node) {
+        Coord coord = ChicagoReferenceFrames.CHICAGO.coords_toWGS84().transform(node.getCoord());
+        return Tensors.vector(coord.getX(), coord.getY());
+    }
+}
@@ -0,0 +1,54 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class IndexedMaxHeapTest extends TestCase {
+    public void testSimple() {
+        IndexedMaxHeap heap = new IndexedMaxHeap(4);
+        heap.set(0, 0.3);
+        heap.set(1, 0.3);
+        heap.set(2, 0.1);
+        assertEquals(3, heap.size());
+        assertEquals(0.3, heap.peekKey());
+        heap.set(2, 0.7);
+        assertEquals(2, heap.peek());
+        heap.set(2, 0.0);
+        assertEquals(0.3, heap.peekKey());
+        assertEquals(3, heap.size()); // equal keys do not overwrite each other
+        assertFalse(heap.contains(3));
+    }
+
+    public void testTop() {
+        IndexedMaxHeap heap = new IndexedMaxHeap(5);
+        double[] keys = { 0.2, 0.9, 0.4, 0.9, 0.1 };
+        for (int i = 0; i < keys.length; ++i)
+            heap.set(i, keys[i]);
+        int[] top = heap.top(3);
+        assertEquals(3, top.length);
+        assertEquals(0.9, keys[top[0]]);
+        assertEquals(0.9, keys[top[1]]);
+        assertEquals(2, top[2]);
+        assertEquals(5, heap.top(10).length);
+    }
+
+    public void testRandomUpdates() {
+        Random random = new Random(7);
+        int n = 200;
+        double[] keys = new double[n];
+        IndexedMaxHeap heap = new IndexedMaxHeap(n);
+        for (int i = 0; i < n; ++i)
+            heap.set(i, keys[i] = random.nextDouble());
+        for (int step = 0; step < 2000; ++step) {
+            int index = random.nextInt(n);
+            heap.set(index, keys[index] = random.nextDouble());
+            double max = 0;
+            for (double key : keys)
+                max = Math.max(max, key);
+            assertEquals(max, heap.peekKey());
+            assertEquals(keys[heap.peek()], heap.peekKey());
+        }
+    }
+}
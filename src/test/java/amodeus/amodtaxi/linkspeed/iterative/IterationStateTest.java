@@ -0,0 +1,71 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+import ch.ethz.idsc.tensor.RealScalar;
+import ch.ethz.idsc.tensor.Scalar;
+import ch.ethz.idsc.tensor.alg.Sort;
+import junit.framework.TestCase;
+
+public class IterationStateTest extends TestCase {
+    private static final int DT = 3600;
+
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(5);
+        Network network = GridNetworks.grid(4, random);
+        List<TaxiTrip> trips = GridNetworks.trips(network, 30, random);
+        int checkHorizon = 10;
+        IterationState state = IterationState.initial(network, GridNetworks.database(network), trips, //
+                DT, checkHorizon, Cost::max, new Random(7), LinkSpeedRouting.DIJKSTRA);
+
+        /** some iterations: queries, recorded ratios, updated trips and scaled links */
+        List<Link> links = new ArrayList<>(network.getLinks().values());
+        for (int iteration = 0; iteration < 45; ++iteration) {
+            TaxiTrip trip = state.randomTrips.nextRandom();
+            Scalar ratio = RealScalar.of(0.5 + random.nextDouble());
+            state.randomTrips.addRecordedRatio(ratio);
+            state.tripMaintainer.update(trip, ratio);
+            state.speeds.scale(links.get(random.nextInt(links.size())), 0.5 + random.nextDouble(), false);
+        }
+
+        File checkpoint = File.createTempFile("iterationState", ".bin.gz");
+        try {
+            state.write(checkpoint, 45);
+            IterationState restored = IterationState.read(checkpoint, network, trips, DT, checkHorizon, Cost::max);
+            assertEquals(45, restored.iterationCount);
+
+            /** link speeds in every time bin */
+            for (Link link : links)
+                for (int time = 0; time <= 108000; time += DT)
+                    assertEquals(state.speeds.getSpeed(link, time), restored.speeds.getSpeed(link, time), 0.0);
+
+            /** window of recorded ratios, stored in ring buffer order */
+            assertEquals(Sort.of(state.randomTrips.getRatios()), Sort.of(restored.randomTrips.getRatios()));
+            assertEquals(state.randomTrips.getRatioCost(), restored.randomTrips.getRatioCost());
+
+            /** ratios and worst trips */
+            Map<TaxiTrip, Scalar> ratios = state.tripMaintainer.getLookupMap();
+            Map<TaxiTrip, Scalar> restoredRatios = restored.tripMaintainer.getLookupMap();
+            assertEquals(ratios.keySet(), restoredRatios.keySet());
+            for (TaxiTrip trip : trips)
+                assertEquals(ratios.get(trip).number().doubleValue(), restoredRatios.get(trip).number().doubleValue(), 0.0);
+            assertEquals(state.tripMaintainer.getWorst(10), restored.tripMaintainer.getWorst(10));
+
+            /** query counts and random generator determine the next draws */
+            for (int draw = 0; draw < 3 * trips.size(); ++draw)
+                assertSame(state.randomTrips.nextRandom(), restored.randomTrips.nextRandom());
+            assertEquals(state.random.nextLong(), restored.random.nextLong());
+        } finally {
+            checkpoint.delete();
+        }
+    }
+}
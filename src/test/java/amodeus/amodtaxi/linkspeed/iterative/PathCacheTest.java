@@ -0,0 +1,47 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import amodeus.amodeus.net.MatsimAmodeusDatabase;
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+import junit.framework.TestCase;
+
+public class PathCacheTest extends TestCase {
+    /** the durations of cached paths equal those of a fresh search after random changes of the link speeds */
+    public void testAgainstSearch() {
+        Random random = new Random(3);
+        Network network = GridNetworks.grid(5, random);
+        MatsimAmodeusDatabase db = GridNetworks.database(network);
+        List<TaxiTrip> trips = GridNetworks.trips(network, 40, random);
+        List<Link> links = new ArrayList<>(network.getLinks().values());
+        DenseLinkSpeeds speeds = new DenseLinkSpeeds(network, 900);
+        PathCache pathCache = new PathCache(speeds);
+        LinkSpeedRouter router = new LinkSpeedRouter(network, db, speeds, LinkSpeedRouting.DIJKSTRA, new SearchCounter(), pathCache);
+        trips.forEach(router::compare);
+
+        for (int round = 0; round < 200; ++round) {
+            /** mostly slower links, as in the estimation, such that cached paths are reused */
+            Link link = links.get(random.nextInt(links.size()));
+            if (random.nextInt(5) == 0)
+                speeds.scale(link, 1 + 0.5 * random.nextDouble(), random.nextBoolean());
+            else
+                speeds.scale(link, 0.5 + 0.5 * random.nextDouble(), false);
+
+            for (int check = 0; check < 5; ++check) {
+                TaxiTrip trip = trips.get(random.nextInt(trips.size()));
+                double cached = router.compare(trip).pathTime.number().doubleValue();
+                LinkSpeedRouter search = //
+                        new LinkSpeedRouter(network, db, speeds, LinkSpeedRouting.DIJKSTRA, new SearchCounter(), new PathCache(speeds));
+                double fresh = search.compare(trip).pathTime.number().doubleValue();
+                assertEquals(fresh, cached, 1e-9 * fresh);
+            }
+        }
+        assertTrue(0 < pathCache.hitRate());
+    }
+}
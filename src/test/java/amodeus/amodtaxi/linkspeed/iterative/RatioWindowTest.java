@@ -0,0 +1,42 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.linkspeed.iterative;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class RatioWindowTest extends TestCase {
+    public void testSimple() {
+        RatioWindow window = new RatioWindow(3);
+        window.add(1.5);
+        window.add(0.9);
+        assertEquals(2, window.size());
+        assertEquals(0.5, window.maxDeviation(), 1e-12);
+        assertEquals(1.2, window.mean(), 1e-12);
+        window.add(1.1);
+        window.add(1.0);
+        assertEquals(3, window.size());
+        assertEquals(0.1, window.maxDeviation(), 1e-12);
+        assertEquals(1.0, window.mean(), 1e-12);
+    }
+
+    public void testRandom() {
+        Random random = new Random(3);
+        int capacity = 17;
+        RatioWindow window = new RatioWindow(capacity);
+        Deque<Double> reference = new ArrayDeque<>();
+        for (int i = 0; i < 1000; ++i) {
+            double ratio = 2 * random.nextDouble();
+            window.add(ratio);
+            reference.addLast(ratio);
+            if (capacity < reference.size())
+                reference.removeFirst();
+            double max = reference.stream().mapToDouble(r -> Math.abs(r - 1)).max().getAsDouble();
+            double mean = reference.stream().mapToDouble(Double::doubleValue).average().getAsDouble();
+            assertEquals(max, window.maxDeviation(), 1e-12);
+            assertEquals(mean, window.mean(), 1e-12);
+        }
+    }
+}
@@ -4,6 +4,8 @@ package amodeus.amodtaxi.scenario.chicago;
 import java.io.File;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import amodeus.amodeus.taxitrip.TaxiTrip;
 import amodeus.amodeus.util.io.CopyFiles;
@@ -13,8 +15,10 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import amodeus.amodtaxi.scenario.CsvSchema;
 import amodeus.amodtaxi.scenario.TaxiTripsReader;
 import amodeus.amodtaxi.scenario.TestDirectories;
+import amodeus.amodtaxi.scenario.TripRowParser;
 import amodeus.amodtaxi.tripmodif.ChicagoFormatModifier;
 import ch.ethz.idsc.tensor.io.DeleteDirectory;
 
@@ -42,6 +46,62 @@ public class TripsReaderChicagoTest {
         Assert.assertEquals(taxiTrips.size(), 89);
     }
 
+    @Test
+    public void testStream() throws Exception {
+        File tripFile = new File(TestDirectories.WORKING, TRIPFILENAME);
+        File preparedFile = new ChicagoFormatModifier().modify(tripFile);
+        List<TaxiTrip> taxiTrips = new OnlineTripsReaderChicago().getTrips(preparedFile);
+
+        /* the stream yields the same trips in the same order */
+        try (Stream<TaxiTrip> stream = new OnlineTripsReaderChicago().stream(preparedFile)) {
+            List<TaxiTrip> streamed = stream.collect(Collectors.toList());
+            Assert.assertEquals(taxiTrips.size(), streamed.size());
+            for (int i = 0; i < taxiTrips.size(); ++i)
+                Assert.assertEquals(taxiTrips.get(i).localId, streamed.get(i).localId);
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        File tripFile = new File(TestDirectories.WORKING, TRIPFILENAME);
+        File preparedFile = new ChicagoFormatModifier().modify(tripFile);
+        List<TaxiTrip> taxiTrips = new OnlineTripsReaderChicago().getTrips(preparedFile);
+
+        /* the parallel reader yields the same trips with the same ids */
+        List<TaxiTrip> parallel = new OnlineTripsReaderChicago().getTrips(preparedFile, 4);
+        Assert.assertEquals(taxiTrips.size(), parallel.size());
+        for (int i = 0; i < taxiTrips.size(); ++i) {
+            Assert.assertEquals(taxiTrips.get(i).localId, parallel.get(i).localId);
+            Assert.assertEquals(taxiTrips.get(i).taxiId, parallel.get(i).taxiId);
+            Assert.assertEquals(taxiTrips.get(i).pickupTimeDate, parallel.get(i).pickupTimeDate);
+        }
+    }
+
+    @Test
+    public void testCompiled() throws Exception {
+        File tripFile = new File(TestDirectories.WORKING, TRIPFILENAME);
+        File preparedFile = new ChicagoFormatModifier().modify(tripFile);
+        List<TaxiTrip> taxiTrips = new OnlineTripsReaderChicago().getTrips(preparedFile);
+
+        /* the compiled parser yields the same trips as the getters by column name */
+        TaxiTripsReader byName = new OnlineTripsReaderChicago() {
+            @Override
+            protected TripRowParser compile(CsvSchema schema) {
+                return this::parseByName;
+            }
+        };
+        List<TaxiTrip> legacy = byName.getTrips(preparedFile);
+        Assert.assertEquals(legacy.size(), taxiTrips.size());
+        for (int i = 0; i < taxiTrips.size(); ++i) {
+            Assert.assertEquals(legacy.get(i).taxiId, taxiTrips.get(i).taxiId);
+            Assert.assertEquals(legacy.get(i).pickupTimeDate, taxiTrips.get(i).pickupTimeDate);
+            Assert.assertEquals(legacy.get(i).dropoffTimeDate, taxiTrips.get(i).dropoffTimeDate);
+            Assert.assertEquals(legacy.get(i).pickupLoc, taxiTrips.get(i).pickupLoc);
+            Assert.assertEquals(legacy.get(i).dropoffLoc, taxiTrips.get(i).dropoffLoc);
+            Assert.assertEquals(legacy.get(i).distance, taxiTrips.get(i).distance);
+        }
+    }
+
     @AfterClass
     public static void cleanUp() throws Exception {
         DeleteDirectory.of(TestDirectories.WORKING, 3, 100);
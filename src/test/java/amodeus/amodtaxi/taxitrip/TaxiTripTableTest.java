@@ -0,0 +1,55 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.taxitrip;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import amodeus.amodeus.taxitrip.TaxiTrip;
+import amodeus.amodeus.util.math.SI;
+import ch.ethz.idsc.tensor.Tensors;
+import ch.ethz.idsc.tensor.qty.Quantity;
+import junit.framework.TestCase;
+
+public class TaxiTripTableTest extends TestCase {
+    public void testRoundTrip() {
+        LocalDateTime pickup = LocalDateTime.of(2018, 1, 22, 22, 15, 0);
+        List<TaxiTrip> taxiTrips = Arrays.asList( //
+                TaxiTrip.of("0", "taxiA", Tensors.vector(-87.62, 41.88), Tensors.vector(-87.65, 41.90), //
+                        Quantity.of(2500, SI.METER), null, pickup, pickup.plusSeconds(600)), //
+                TaxiTrip.of("1", "taxiB", Tensors.vector(-87.70, 41.95), Tensors.vector(-87.62, 41.88), //
+                        Quantity.of(8000, SI.METER), pickup.minusSeconds(120), pickup.plusMinutes(15), pickup.plusMinutes(35)), //
+                TaxiTrip.of("2", "taxiA", Tensors.vector(-87.65, 41.90), Tensors.vector(-87.70, 41.95), //
+                        Quantity.of(4000, SI.METER), null, pickup.plusHours(1), pickup.plusHours(1).plusSeconds(900)));
+        TaxiTripTable taxiTripTable = TaxiTripTable.of(taxiTrips);
+        assertEquals(3, taxiTripTable.size());
+        assertEquals(2, taxiTripTable.numberOfTaxis());
+        assertSame(taxiTripTable.taxiId(0), taxiTripTable.taxiId(2));
+        for (int row = 0; row < taxiTrips.size(); ++row) {
+            TaxiTrip expected = taxiTrips.get(row);
+            TaxiTrip actual = taxiTripTable.get(row);
+            assertEquals(expected.localId, actual.localId);
+            assertEquals(expected.taxiId, actual.taxiId);
+            assertEquals(expected.pickupLoc, actual.pickupLoc);
+            assertEquals(expected.dropoffLoc, actual.dropoffLoc);
+            assertEquals(expected.pickupTimeDate, actual.pickupTimeDate);
+            assertEquals(expected.dropoffTimeDate, actual.dropoffTimeDate);
+            assertEquals(expected.driveTime.number().doubleValue(), actual.driveTime.number().doubleValue(), 1e-9);
+            assertEquals(expected.distance.number().doubleValue(), actual.distance.number().doubleValue(), 1e-9);
+        }
+        assertEquals(120, taxiTripTable.waitTime(1), 1e-9);
+    }
+
+    public void testCopyRow() {
+        LocalDateTime pickup = LocalDateTime.of(2018, 1, 22, 22, 15, 0);
+        TaxiTripTable taxiTripTable = new TaxiTripTable();
+        taxiTripTable.add(TaxiTrip.of("0", "taxiA", Tensors.vector(1, 2), Tensors.vector(3, 4), //
+                Quantity.of(100, SI.METER), null, pickup, pickup.plusSeconds(60)));
+        TaxiTripTable copy = new TaxiTripTable();
+        copy.add(taxiTripTable, 0);
+        assertEquals(1, copy.size());
+        assertEquals(taxiTripTable.pickupTime(0), copy.pickupTime(0));
+        assertEquals(3.0, copy.dropoffLon(0), 0.0);
+        assertEquals("taxiA", copy.taxiId(0));
+    }
+}
@@ -0,0 +1,93 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import junit.framework.TestCase;
+
+public class ChunkedLinesTest extends TestCase {
+    private static final String CONTENT = "header,a\r\nr1,\u00e4\u00f6\r\n\r\nr2,x\n\nr3,y\r\n" //
+            + "r4,with\rcarriage\r\nr5,last\r\n";
+
+    private static File write(String content) throws IOException {
+        File file = File.createTempFile("chunkedLines", ".csv");
+        file.deleteOnExit();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private static List<String> sequential(File file, boolean skipFirstLine) throws IOException {
+        List<String> lines = new ArrayList<>();
+        ChunkedLines.forEach(file, skipFirstLine, lines::add);
+        return lines;
+    }
+
+    private static List<String> chunked(File file, boolean skipFirstLine, int numThreads, long chunkSize) throws IOException {
+        return ChunkedLines.map(file, skipFirstLine, numThreads, chunkSize, Function.identity()).stream() //
+                .flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    public void testSequential() throws IOException {
+        File file = write(CONTENT);
+        List<String> expected = new ArrayList<>();
+        expected.add("r1,\u00e4\u00f6");
+        expected.add("r2,x");
+        expected.add("r3,y");
+        expected.add("r4,with\rcarriage");
+        expected.add("r5,last");
+        assertEquals(expected, sequential(file, true));
+        assertEquals("header,a", sequential(file, false).get(0));
+        assertEquals("header,a", ChunkedLines.firstLine(file));
+    }
+
+    public void testTinyChunks() throws IOException {
+        File file = write(CONTENT);
+        /** every chunk size places range boundaries at all positions, including within \r\n */
+        for (long chunkSize = 1; chunkSize <= CONTENT.getBytes(StandardCharsets.UTF_8).length + 2; ++chunkSize) {
+            assertEquals(sequential(file, true), chunked(file, true, 3, chunkSize));
+            assertEquals(sequential(file, false), chunked(file, false, 2, chunkSize));
+        }
+    }
+
+    public void testRanges() throws IOException {
+        File file = write(CONTENT);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long start = ChunkedLines.nextLineStart(channel, 0);
+            assertEquals("header,a\r\n".length(), start);
+            List<long[]> ranges = ChunkedLines.ranges(channel, start, 5);
+            assertEquals(start, ranges.get(0)[0]);
+            assertEquals(channel.size(), ranges.get(ranges.size() - 1)[1]);
+            for (int i = 1; i < ranges.size(); ++i) {
+                assertEquals(ranges.get(i - 1)[1], ranges.get(i)[0]);
+                /** every range but the first starts after a line break */
+                assertEquals(ranges.get(i)[0], ChunkedLines.nextLineStart(channel, ranges.get(i)[0] - 1));
+            }
+        }
+    }
+
+    public void testOrder() throws IOException {
+        /** the lines of all chunks are in the order of the file, as required by the ids of the trip readers */
+        Random random = new Random(5);
+        StringBuilder stringBuilder = new StringBuilder("id\n");
+        for (int row = 0; row < 2000; ++row)
+            stringBuilder.append(row).append(random.nextBoolean() ? "\r\n" : "\n");
+        File file = write(stringBuilder.toString());
+        List<List<Integer>> chunks = ChunkedLines.map(file, true, 4, 64, Integer::parseInt);
+        assertTrue(100 < chunks.size());
+        int expected = 0;
+        for (List<Integer> chunk : chunks)
+            for (int value : chunk)
+                assertEquals(expected++, value);
+        assertEquals(2000, expected);
+    }
+}
@@ -0,0 +1,58 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.util;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class FixedFormatsTest extends TestCase {
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSS");
+
+    public void testTimestamp() {
+        for (String string : new String[] { "2018-01-22T22:17:25.123", "2016-02-29T00:00:00.000", "2017-12-31T23:59:59.999" })
+            assertEquals(LocalDateTime.parse(string, FORMATTER), FixedFormats.parseTimestamp(string, 0, string.length(), FORMATTER));
+        /** field within a line */
+        String line = "abc,2018-01-22T22:17:25.123,1";
+        assertEquals(LocalDateTime.of(2018, 1, 22, 22, 17, 25, 123_000_000), FixedFormats.parseTimestamp(line, 4, 27, FORMATTER));
+    }
+
+    public void testTimestampFallback() {
+        /** resolved by the formatter to the last day of the month */
+        String string = "2018-04-31T10:00:00.000";
+        assertEquals(LocalDateTime.parse(string, FORMATTER), FixedFormats.parseTimestamp(string, 0, string.length(), FORMATTER));
+        for (String invalid : new String[] { "2018-01-22 22:17:25.123", "2018-01-2xT22:17:25.123", "2018-01-22T22:17:25" })
+            try {
+                FixedFormats.parseTimestamp(invalid, 0, invalid.length(), FORMATTER);
+                fail();
+            } catch (Exception exception) {
+                // ---
+            }
+    }
+
+    public void testDouble() {
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; ++i) {
+            String string = Double.toString(-180 + 360 * random.nextDouble());
+            assertEquals(Double.parseDouble(string), FixedFormats.parseDouble(string, 0, string.length()));
+        }
+        for (String string : new String[] { "41.88", "-87.6241339", "0", "-0.0", ".5", "+3.", "1e-3", "123456789012345678.9", "NaN" })
+            assertEquals(Double.parseDouble(string), FixedFormats.parseDouble(string, 0, string.length()));
+    }
+
+    public void testDoubleFail() {
+        for (String invalid : new String[] { "", "-", ".", "1.2.3", "1,5" })
+            try {
+                FixedFormats.parseDouble(invalid, 0, invalid.length());
+                fail();
+            } catch (NumberFormatException numberFormatException) {
+                // ---
+            }
+    }
+
+    public void testLong() {
+        String line = "a,1260,b";
+        assertEquals(1260, FixedFormats.parseLong(line, 2, 6));
+    }
+}
@@ -0,0 +1,55 @@
+/* amodeus - Copyright (c) 2019, ETH Zurich, Institute for Dynamic Systems and Control */
+package amodeus.amodtaxi.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import junit.framework.TestCase;
+
+public class PushStreamsTest extends TestCase {
+    public void testOrder() {
+        /** more elements than the capacity of the buffer */
+        try (Stream<Integer> stream = PushStreams.of(consumer -> IntStream.range(0, 5000).forEach(consumer::accept))) {
+            List<Integer> list = stream.collect(Collectors.toList());
+            assertEquals(IntStream.range(0, 5000).boxed().collect(Collectors.toList()), list);
+        }
+    }
+
+    public void testFailure() {
+        try (Stream<Integer> stream = PushStreams.of(consumer -> {
+            consumer.accept(1);
+            consumer.accept(2);
+            throw new IOException("source failed");
+        })) {
+            stream.forEach(i -> {
+                // ---
+            });
+            fail();
+        } catch (RuntimeException runtimeException) {
+            assertTrue(runtimeException.getCause() instanceof IOException);
+            assertEquals("source failed", runtimeException.getCause().getMessage());
+        }
+    }
+
+    public void testClose() throws InterruptedException {
+        CountDownLatch stopped = new CountDownLatch(1);
+        Stream<Integer> stream = PushStreams.of(consumer -> {
+            try {
+                for (int i = 0;; ++i)
+                    consumer.accept(i);
+            } finally {
+                stopped.countDown();
+            }
+        });
+        /** the source blocks once the buffer is full */
+        assertEquals(10, stream.limit(10).count());
+        assertEquals(1, stopped.getCount());
+        stream.close();
+        assertTrue(stopped.await(10, TimeUnit.SECONDS));
+    }
+}